@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.test.AndroidTestCase;
+
+public class TestBitmapCache extends AndroidTestCase {
+
+    @Override
+    protected void tearDown() throws Exception {
+        BitmapCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        super.tearDown();
+    }
+
+    /*
+        A widget refresh asks for the same few icons over and over; each must be decoded once.
+     */
+    public void testDistinctIconsAreDecodedOnce() {
+        Bitmap first = BitmapCache.getResource(mContext, R.drawable.ic_clear, 0, 0);
+        assertNotNull("Error: The icon should decode", first);
+        for (int row = 0; row < 14; row++) {
+            assertSame("Error: The icon was decoded again",
+                    first, BitmapCache.getResource(mContext, R.drawable.ic_clear, 0, 0));
+        }
+        assertNotSame("Error: Another icon must not share the cache entry",
+                first, BitmapCache.getResource(mContext, R.drawable.ic_rain, 0, 0));
+    }
+
+    public void testSizesAreKeptApart() {
+        Bitmap original = BitmapCache.getResource(mContext, R.drawable.art_clear, 0, 0);
+        int width = Math.max(1, original.getWidth() / 3);
+        int height = Math.max(1, original.getHeight() / 3);
+        Bitmap small = BitmapCache.getResource(mContext, R.drawable.art_clear, width, height);
+        assertNotSame("Error: Each size needs its own bitmap", original, small);
+        assertTrue("Error: The bitmap should fit the requested width", small.getWidth() <= width);
+        assertTrue("Error: The bitmap should fit the requested height", small.getHeight() <= height);
+        assertSame(small, BitmapCache.getResource(mContext, R.drawable.art_clear, width, height));
+    }
+
+    public void testTrimMemoryEvicts() {
+        String key = BitmapCache.key("http://example.com/art.png", 0, 0);
+        BitmapCache.put(mContext, key, Bitmap.createBitmap(4, 4, Bitmap.Config.ARGB_8888));
+        assertNotNull(BitmapCache.get(mContext, key));
+
+        BitmapCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertNotNull("Error: A moderate trim should keep the cache",
+                BitmapCache.get(mContext, key));
+
+        BitmapCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertNull("Error: Going to the background should empty the cache",
+                BitmapCache.get(mContext, key));
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.v7.widget.RecyclerView;
+import android.test.InstrumentationTestCase;
+import android.text.format.Time;
+import android.util.Log;
+import android.view.ViewTreeObserver;
+
+import com.example.android.sunshine.app.data.TestUtilities;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.utils.PollingCheck;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    Measures the time from starting MainActivity to the first frame that shows forecast rows, with
+    and without a forecast snapshot on disk.  The test process keeps the database open between
+    launches, so the numbers without the snapshot are a lower bound of a real cold start.  The
+    medians are reported in the log for comparing builds on the same device; launch times vary
+    too much between devices for a fixed limit to mean anything.
+ */
+public class TestColdStart extends InstrumentationTestCase {
+
+    public static final String LOG_TAG = TestColdStart.class.getSimpleName();
+
+    private static final int ROUNDS = 5;
+    private static final int DAYS = 14;
+
+    private Context mContext;
+    private String mLocationSetting;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext = getInstrumentation().getTargetContext();
+
+        mLocationSetting = Utility.getPreferredLocation(mContext);
+        long locationId = TestUtilities.insertNorthPoleLocationValues(mContext, mLocationSetting);
+
+        Time time = new Time();
+        time.setToNow();
+        int today = Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+        ContentValues[] weather = new ContentValues[DAYS];
+        for (int i = 0; i < DAYS; i++) {
+            weather[i] = TestUtilities.createWeatherValues(locationId, time.setJulianDay(today + i));
+        }
+        mContext.getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, weather);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ForecastSnapshot.flush();
+        ForecastSnapshot.delete(mContext);
+        TestUtilities.deleteLocation(mContext, mLocationSetting);
+        super.tearDown();
+    }
+
+    public void testBenchmarkFirstPopulatedFrame() {
+        long[] without = new long[ROUNDS];
+        long[] with = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            ForecastSnapshot.flush();
+            ForecastSnapshot.delete(mContext);
+            without[round] = launchAndTimeFirstPopulatedFrame();
+
+            ForecastSnapshot.refresh(mContext);
+            ForecastSnapshot.flush();
+            with[round] = launchAndTimeFirstPopulatedFrame();
+        }
+        Arrays.sort(without);
+        Arrays.sort(with);
+        Log.i(LOG_TAG, "First populated frame (median of " + ROUNDS + "): without snapshot="
+                + without[ROUNDS / 2] + "ms, with snapshot=" + with[ROUNDS / 2] + "ms");
+    }
+
+    /*
+        Starts MainActivity and returns the milliseconds until a frame with forecast rows is about
+        to be drawn.
+     */
+    private long launchAndTimeFirstPopulatedFrame() {
+        final AtomicLong firstFrame = new AtomicLong();
+        Application application = (Application) mContext.getApplicationContext();
+        Application.ActivityLifecycleCallbacks callbacks = new LifecycleAdapter() {
+            @Override
+            public void onActivityStarted(Activity activity) {
+                if (!(activity instanceof MainActivity)) {
+                    return;
+                }
+                final RecyclerView list =
+                        (RecyclerView) activity.findViewById(R.id.recyclerview_forecast);
+                list.getViewTreeObserver().addOnPreDrawListener(
+                        new ViewTreeObserver.OnPreDrawListener() {
+                            @Override
+                            public boolean onPreDraw() {
+                                if (list.getChildCount() > 0) {
+                                    firstFrame.set(SystemClock.uptimeMillis());
+                                    list.getViewTreeObserver().removeOnPreDrawListener(this);
+                                }
+                                return true;
+                            }
+                        });
+            }
+        };
+        application.registerActivityLifecycleCallbacks(callbacks);
+
+        Intent intent = new Intent(mContext, MainActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        long start = SystemClock.uptimeMillis();
+        final Activity activity = getInstrumentation().startActivitySync(intent);
+        try {
+            new PollingCheck(5000) {
+                @Override
+                protected boolean check() {
+                    return firstFrame.get() != 0;
+                }
+            }.run();
+            return firstFrame.get() - start;
+        } finally {
+            application.unregisterActivityLifecycleCallbacks(callbacks);
+            getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    activity.finish();
+                }
+            });
+            getInstrumentation().waitForIdleSync();
+        }
+    }
+
+    private static class LifecycleAdapter implements Application.ActivityLifecycleCallbacks {
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.text.SimpleDateFormat;
+
+public class TestDayLabelCache extends AndroidTestCase {
+
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    public void testTodayAndTomorrowLabels() {
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        Time time = new Time();
+        time.setToNow();
+        int currentJulianDay = Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+        int julianDay = Time.getJulianDay(today, time.gmtoff);
+        // The normalized UTC date can land on a different local day, so only check the labels
+        // when it does not.
+        if (julianDay == currentJulianDay) {
+            assertEquals("Error: Today's day name is wrong",
+                    mContext.getString(R.string.today), Utility.getDayName(mContext, today));
+            assertEquals("Error: Tomorrow's day name is wrong",
+                    mContext.getString(R.string.tomorrow),
+                    Utility.getDayName(mContext, today + DAY_IN_MILLIS));
+        }
+    }
+
+    /*
+        Labels served from the cache must be the same as freshly formatted ones.
+     */
+    public void testCachedLabelsMatchFormatters() {
+        long date = WeatherContract.normalizeDate(System.currentTimeMillis()) + 10 * DAY_IN_MILLIS;
+        String expected = new SimpleDateFormat("EEE MMM dd").format(date);
+
+        String first = Utility.getFriendlyDayString(mContext, date, false);
+        String second = Utility.getFriendlyDayString(mContext, date, false);
+        assertEquals("Error: Far away days should use the short date format", expected, first);
+        assertSame("Error: The second lookup should be served from the cache", first, second);
+
+        assertEquals("Error: Month day does not match SimpleDateFormat",
+                new SimpleDateFormat("MMMM dd").format(date),
+                Utility.getFormattedMonthDay(mContext, date));
+    }
+}
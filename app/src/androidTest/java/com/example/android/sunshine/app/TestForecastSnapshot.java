@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+public class TestForecastSnapshot extends AndroidTestCase {
+
+    private static final String TEST_LOCATION = "99705";
+    private static final int DAYS = 14;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        ForecastSnapshot.flush();
+        ForecastSnapshot.delete(mContext);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ForecastSnapshot.flush();
+        ForecastSnapshot.delete(mContext);
+        super.tearDown();
+    }
+
+    public void testRoundTrip() throws Exception {
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        Cursor forecast = createForecast(today);
+        byte[] bytes = ForecastSnapshot.encode(forecast);
+        assertNotNull("Error: A non-empty forecast should encode", bytes);
+
+        Cursor snapshot = ForecastSnapshot.decode(bytes, TEST_LOCATION, today);
+        assertNotNull("Error: The snapshot should decode for its own location", snapshot);
+        assertEquals("Error: Every day should survive the round trip",
+                forecast.getCount(), snapshot.getCount());
+        assertEquals(forecast.getColumnCount(), snapshot.getColumnCount());
+        forecast.moveToPosition(-1);
+        while (forecast.moveToNext()) {
+            assertTrue(snapshot.moveToNext());
+            for (int column = 0; column < forecast.getColumnCount(); column++) {
+                assertEquals("Error: Column " + column + " doesn't match",
+                        forecast.getString(column), snapshot.getString(column));
+            }
+        }
+        assertEquals("Error: The adapter looks the date column up by name",
+                ForecastFragment.COL_WEATHER_DATE,
+                snapshot.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE));
+        snapshot.close();
+        forecast.close();
+    }
+
+    public void testSnapshotForOtherLocationIsIgnored() throws Exception {
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        byte[] bytes = ForecastSnapshot.encode(createForecast(today));
+        assertNull("Error: A snapshot of another location must not be shown",
+                ForecastSnapshot.decode(bytes, "94043", today));
+    }
+
+    public void testPastDaysAreDropped() throws Exception {
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        Time time = new Time();
+        time.setToNow();
+        int julianToday = Time.getJulianDay(today, time.gmtoff);
+        long yesterday = time.setJulianDay(julianToday - 1);
+        byte[] bytes = ForecastSnapshot.encode(createForecast(yesterday));
+
+        Cursor snapshot = ForecastSnapshot.decode(bytes, TEST_LOCATION, today);
+        assertEquals("Error: Yesterday should be dropped from the snapshot",
+                DAYS - 1, snapshot.getCount());
+        snapshot.close();
+
+        long future = time.setJulianDay(julianToday + DAYS);
+        assertNull("Error: A snapshot with only past days is of no use",
+                ForecastSnapshot.decode(bytes, TEST_LOCATION, future));
+    }
+
+    public void testSaveAndRead() {
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        assertNull("Error: There should be no snapshot yet",
+                ForecastSnapshot.read(mContext, TEST_LOCATION));
+
+        ForecastSnapshot.save(mContext, createForecast(today));
+        ForecastSnapshot.flush();
+        Cursor snapshot = ForecastSnapshot.read(mContext, TEST_LOCATION);
+        assertNotNull("Error: The saved snapshot should be readable", snapshot);
+        assertEquals(DAYS, snapshot.getCount());
+        snapshot.close();
+
+        ForecastSnapshot.save(mContext, new MatrixCursor(ForecastFragment.FORECAST_COLUMNS));
+        ForecastSnapshot.flush();
+        snapshot = ForecastSnapshot.read(mContext, TEST_LOCATION);
+        assertNotNull("Error: An empty forecast should not replace the snapshot", snapshot);
+        snapshot.close();
+    }
+
+    static Cursor createForecast(long startDate) {
+        MatrixCursor cursor = new MatrixCursor(ForecastFragment.FORECAST_COLUMNS);
+        Time time = new Time();
+        time.setToNow();
+        int startDay = Time.getJulianDay(startDate, time.gmtoff);
+        for (int i = 0; i < DAYS; i++) {
+            cursor.addRow(new Object[]{
+                    (long) i + 1,
+                    time.setJulianDay(startDay + i),
+                    i % 2 == 0 ? "Clear" : "Asteroids",
+                    20.5 + i,
+                    -3.25 - i,
+                    TEST_LOCATION,
+                    i % 2 == 0 ? 800 : 321,
+                    64.7488,
+                    -147.353
+            });
+        }
+        return cursor;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.utils.PollingCheck;
+
+public class TestPreferenceSnapshot extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestPreferenceSnapshot.class.getSimpleName();
+
+    private static final int BENCHMARK_ITERATIONS = 20000;
+
+    private SharedPreferences mPrefs;
+    private String mOriginalUnits;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mOriginalUnits = mPrefs.getString(mContext.getString(R.string.pref_units_key), null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SharedPreferences.Editor editor = mPrefs.edit();
+        if (mOriginalUnits == null) {
+            editor.remove(mContext.getString(R.string.pref_units_key));
+        } else {
+            editor.putString(mContext.getString(R.string.pref_units_key), mOriginalUnits);
+        }
+        editor.commit();
+        super.tearDown();
+    }
+
+    /*
+        The snapshot must follow preference edits without anyone having to invalidate it by hand.
+     */
+    public void testSnapshotFollowsPreferenceChanges() {
+        mPrefs.edit().putString(mContext.getString(R.string.pref_units_key),
+                mContext.getString(R.string.pref_units_imperial)).commit();
+        // Listeners are notified on the main thread, so give it a moment to catch up.
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return !Utility.isMetric(mContext);
+            }
+        }.run();
+
+        mPrefs.edit().putString(mContext.getString(R.string.pref_units_key),
+                mContext.getString(R.string.pref_units_metric)).commit();
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return Utility.isMetric(mContext);
+            }
+        }.run();
+    }
+
+    public void testSnapshotMatchesSharedPreferences() {
+        assertEquals("Error: Snapshot location does not match the stored preference",
+                mPrefs.getString(mContext.getString(R.string.pref_location_key),
+                        mContext.getString(R.string.pref_location_default)),
+                Utility.getPreferredLocation(mContext));
+        assertEquals("Error: Snapshot art pack flag does not match the stored preference",
+                uncachedUsingLocalGraphics(mContext), Utility.usingLocalGraphics(mContext));
+        assertEquals("Error: Snapshot units do not match the stored preference",
+                uncachedIsMetric(mContext), Utility.isMetric(mContext));
+    }
+
+    /*
+        Compares the per-call cost of the old getters, which went through SharedPreferences and
+        resource lookups on every call, with the snapshot-backed ones.  This is a single timed
+        pass, too noisy on a shared device or an emulator to assert on, so it only reports.
+     */
+    public void testBenchmarkPerCallCost() {
+        // warm up both paths
+        for (int i = 0; i < 1000; i++) {
+            uncachedIsMetric(mContext);
+            Utility.isMetric(mContext);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            uncachedIsMetric(mContext);
+            uncachedUsingLocalGraphics(mContext);
+            uncachedPreferredLocation(mContext);
+        }
+        long before = (System.nanoTime() - start) / (BENCHMARK_ITERATIONS * 3);
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            Utility.isMetric(mContext);
+            Utility.usingLocalGraphics(mContext);
+            Utility.getPreferredLocation(mContext);
+        }
+        long after = (System.nanoTime() - start) / (BENCHMARK_ITERATIONS * 3);
+
+        Log.i(LOG_TAG, "Preference getter cost per call: before=" + before + "ns, after="
+                + after + "ns");
+    }
+
+    // The getters as they were implemented before the snapshot was introduced.
+    private static boolean uncachedIsMetric(Context context) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return prefs.getString(context.getString(R.string.pref_units_key),
+                context.getString(R.string.pref_units_metric))
+                .equals(context.getString(R.string.pref_units_metric));
+    }
+
+    private static boolean uncachedUsingLocalGraphics(Context context) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
+        return prefs.getString(context.getString(R.string.pref_art_pack_key),
+                sunshineArtPack).equals(sunshineArtPack);
+    }
+
+    private static String uncachedPreferredLocation(Context context) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return prefs.getString(context.getString(R.string.pref_location_key),
+                context.getString(R.string.pref_location_default));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.test.AndroidTestCase;
+
+import java.util.Locale;
+
+/*
+    Golden tests: the formatting engine must produce exactly what String.format produced with the
+    same resource patterns, in every locale we care about.
+ */
+public class TestUnitFormatter extends AndroidTestCase {
+
+    private static final Locale[] LOCALES = {
+            Locale.US,
+            Locale.FRANCE,
+            Locale.GERMANY,
+            new Locale("ar", "EG"),
+            new Locale("fa", "IR"),
+            new Locale("hi", "IN")
+    };
+
+    private static final double[] VALUES = {
+            0, -0.0, 0.4, 0.5, 0.49999999999999994, -0.4, -0.5, -0.6, 1.5, 2.5, -2.5, 9.5, 10,
+            21.49, 21.5, -17.78, 99.99, 100.5, 1013.25, 1234567.5, -40, 0.621371192237334
+    };
+
+    private static final float[] DEGREES = {
+            0, 22.4f, 22.5f, 67.5f, 100, 112.5f, 157.5f, 202.4f, 202.5f, 247.5f, 292.5f, 337.4f,
+            337.5f, 359.9f, 360, 400, -10, Float.NaN
+    };
+
+    private Locale mDefaultLocale;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDefaultLocale = Locale.getDefault();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Locale.setDefault(mDefaultLocale);
+        super.tearDown();
+    }
+
+    public void testSingleValueFormatsMatchStringFormat() {
+        int[] formats = {
+                R.string.format_temperature,
+                R.string.format_pressure,
+                R.string.format_humidity
+        };
+        for (Locale locale : LOCALES) {
+            Locale.setDefault(locale);
+            for (int formatId : formats) {
+                String pattern = mContext.getString(formatId);
+                for (double value : VALUES) {
+                    assertEquals("Error: Mismatch for " + value + " in " + locale,
+                            String.format(pattern, value),
+                            UnitFormatter.format(mContext, formatId, value));
+                    float floatValue = (float) value;
+                    assertEquals("Error: Mismatch for " + floatValue + "f in " + locale,
+                            String.format(pattern, floatValue),
+                            UnitFormatter.format(mContext, formatId, floatValue));
+                }
+            }
+        }
+    }
+
+    public void testWindMatchesStringFormat() {
+        int[] formats = {R.string.format_wind_kmh, R.string.format_wind_mph};
+        for (Locale locale : LOCALES) {
+            Locale.setDefault(locale);
+            for (int formatId : formats) {
+                String pattern = mContext.getString(formatId);
+                for (double value : VALUES) {
+                    float speed = (float) value;
+                    for (float degrees : DEGREES) {
+                        String direction = legacyDirection(degrees);
+                        assertEquals("Error: Wrong direction for " + degrees,
+                                direction, UnitFormatter.getWindDirection(degrees));
+                        assertEquals("Error: Mismatch for " + speed + " in " + locale,
+                                String.format(pattern, speed, direction),
+                                UnitFormatter.format(mContext, formatId, speed, direction));
+                    }
+                }
+            }
+        }
+    }
+
+    // Direction lookup as it was implemented before the direction table.
+    private static String legacyDirection(float degrees) {
+        String direction = "Unknown";
+        if (degrees >= 337.5 || degrees < 22.5) {
+            direction = "N";
+        } else if (degrees >= 22.5 && degrees < 67.5) {
+            direction = "NE";
+        } else if (degrees >= 67.5 && degrees < 112.5) {
+            direction = "E";
+        } else if (degrees >= 112.5 && degrees < 157.5) {
+            direction = "SE";
+        } else if (degrees >= 157.5 && degrees < 202.5) {
+            direction = "S";
+        } else if (degrees >= 202.5 && degrees < 247.5) {
+            direction = "SW";
+        } else if (degrees >= 247.5 && degrees < 292.5) {
+            direction = "W";
+        } else if (degrees >= 292.5 && degrees < 337.5) {
+            direction = "NW";
+        }
+        return direction;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.gcm;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+
+import com.example.android.sunshine.app.data.TestUtilities;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import org.json.JSONException;
+
+import java.util.Locale;
+
+public class TestForecastDeltaMessage extends AndroidTestCase {
+
+    private static final String TEST_LOCATION = TestUtilities.TEST_LOCATION;
+
+    // What the server sends: a sequence number, the location and the changed fields of two days.
+    // The dates are filled in relative to today.
+    private static final String FIXTURE = "{\"seq\": %d, \"loc\": \"" + TEST_LOCATION + "\","
+            + " \"days\": ["
+            + "{\"date\": %d, \"max\": 31.5, \"wid\": 211, \"desc\": \"Thunderstorm\"},"
+            + "{\"date\": %d, \"min\": -2.25, \"hum\": 80, \"deg\": 270}"
+            + "]}";
+
+    private long mToday;
+    private long mTomorrow;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Time time = new Time();
+        time.setToNow();
+        int julianToday = Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+        mToday = time.setJulianDay(julianToday);
+        mTomorrow = time.setJulianDay(julianToday + 1);
+
+        TestUtilities.deleteLocation(mContext, TEST_LOCATION);
+        ForecastDeltaMessage.resetSequence(mContext);
+
+        long locationId = TestUtilities.insertNorthPoleLocationValues(mContext, TEST_LOCATION);
+        mContext.getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI,
+                new ContentValues[]{
+                        TestUtilities.createWeatherValues(locationId, mToday),
+                        TestUtilities.createWeatherValues(locationId, mTomorrow)});
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestUtilities.deleteLocation(mContext, TEST_LOCATION);
+        ForecastDeltaMessage.resetSequence(mContext);
+        super.tearDown();
+    }
+
+    public void testParseFixture() throws Exception {
+        ForecastDeltaMessage delta = ForecastDeltaMessage.parse(fixture(7, mToday, mTomorrow));
+        assertEquals(7, delta.sequence);
+        assertEquals(TEST_LOCATION, delta.locationSetting);
+        assertEquals(2, delta.dates.length);
+        assertEquals(mToday, delta.getStartDate());
+        assertEquals(mTomorrow, delta.getEndDate());
+
+        ContentValues today = delta.changes[0];
+        assertEquals("Error: Only the fields in the payload should change", 3, today.size());
+        assertEquals(31.5, today.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP));
+        assertEquals(211, (int) today.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID));
+        assertEquals("Thunderstorm",
+                today.getAsString(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC));
+        assertEquals(3, delta.changes[1].size());
+    }
+
+    public void testMalformedPayloadsAreRejected() {
+        String[] payloads = {
+                "not json",
+                "{\"loc\": \"99705\", \"days\": [{\"date\": 1, \"max\": 1}]}",
+                "{\"seq\": -1, \"loc\": \"99705\", \"days\": [{\"date\": 1, \"max\": 1}]}",
+                "{\"seq\": 1, \"loc\": \"\", \"days\": [{\"date\": 1, \"max\": 1}]}",
+                "{\"seq\": 1, \"loc\": \"99705\", \"days\": []}",
+                "{\"seq\": 1, \"loc\": \"99705\", \"days\": [{\"max\": 1}]}",
+                "{\"seq\": 1, \"loc\": \"99705\", \"days\": [{\"date\": 1}]}",
+                "{\"seq\": 1, \"loc\": \"99705\", \"days\": [{\"date\": 1, \"max\": \"hot\"}]}",
+                "{\"seq\": 1, \"loc\": \"99705\", \"days\": [{\"date\": 1, \"uv\": 3}]}",
+        };
+        for (String payload : payloads) {
+            try {
+                ForecastDeltaMessage.parse(payload);
+                fail("Error: Payload should have been rejected: " + payload);
+            } catch (JSONException expected) {
+            }
+        }
+    }
+
+    public void testApplyWritesChangedFields() throws Exception {
+        ForecastDeltaMessage delta = ForecastDeltaMessage.parse(fixture(7, mToday, mTomorrow));
+        assertEquals(ForecastDeltaMessage.RESULT_APPLIED, delta.apply(mContext));
+
+        Cursor cursor = queryDay(mToday);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(31.5, cursor.getDouble(cursor.getColumnIndex(
+                WeatherContract.WeatherEntry.COLUMN_MAX_TEMP)));
+        assertEquals("Error: Fields missing from the delta must be left alone", 65.0,
+                cursor.getDouble(cursor.getColumnIndex(
+                        WeatherContract.WeatherEntry.COLUMN_MIN_TEMP)));
+        assertEquals(211, cursor.getInt(cursor.getColumnIndex(
+                WeatherContract.WeatherEntry.COLUMN_WEATHER_ID)));
+        cursor.close();
+
+        cursor = queryDay(mTomorrow);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(-2.25, cursor.getDouble(cursor.getColumnIndex(
+                WeatherContract.WeatherEntry.COLUMN_MIN_TEMP)));
+        assertEquals(75.0, cursor.getDouble(cursor.getColumnIndex(
+                WeatherContract.WeatherEntry.COLUMN_MAX_TEMP)));
+        cursor.close();
+    }
+
+    public void testSequenceNumbers() throws Exception {
+        assertEquals("Error: The first delta seen should be applied",
+                ForecastDeltaMessage.RESULT_APPLIED,
+                ForecastDeltaMessage.parse(fixture(7, mToday, mTomorrow)).apply(mContext));
+        assertEquals("Error: The next delta in sequence should be applied",
+                ForecastDeltaMessage.RESULT_APPLIED,
+                ForecastDeltaMessage.parse(fixture(8, mToday, mTomorrow)).apply(mContext));
+        assertEquals("Error: A repeated delta should be dropped",
+                ForecastDeltaMessage.RESULT_STALE,
+                ForecastDeltaMessage.parse(fixture(8, mToday, mTomorrow)).apply(mContext));
+        assertEquals("Error: An older delta should be dropped",
+                ForecastDeltaMessage.RESULT_STALE,
+                ForecastDeltaMessage.parse(fixture(3, mToday, mTomorrow)).apply(mContext));
+        assertEquals("Error: A gap in the sequence should ask for a full sync",
+                ForecastDeltaMessage.RESULT_NEEDS_SYNC,
+                ForecastDeltaMessage.parse(fixture(10, mToday, mTomorrow)).apply(mContext));
+        assertEquals("Error: Back in sequence after the gap",
+                ForecastDeltaMessage.RESULT_APPLIED,
+                ForecastDeltaMessage.parse(fixture(11, mToday, mTomorrow)).apply(mContext));
+    }
+
+    public void testUnknownDayNeedsSync() throws Exception {
+        long farFuture = mTomorrow + 30 * 24 * 60 * 60 * 1000L;
+        ForecastDeltaMessage delta = ForecastDeltaMessage.parse(
+                fixture(1, mToday, farFuture));
+        assertEquals("Error: A day we don't have can't be made from a delta",
+                ForecastDeltaMessage.RESULT_NEEDS_SYNC, delta.apply(mContext));
+    }
+
+    private String fixture(long sequence, long firstDate, long secondDate) {
+        return String.format(Locale.US, FIXTURE, sequence, firstDate, secondDate);
+    }
+
+    private Cursor queryDay(long date) {
+        return mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocationWithDate(TEST_LOCATION, date),
+                null, null, null, null);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentValues;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.TestUtilities;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.shared.ForecastCodec;
+import com.example.android.sunshine.shared.ForecastDay;
+import com.example.android.sunshine.shared.WearContract;
+import com.google.android.gms.wearable.DataMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestForecastCodec extends AndroidTestCase {
+
+    private static final String LOG_TAG = TestForecastCodec.class.getSimpleName();
+
+    private static final String TEST_LOCATION = TestUtilities.TEST_LOCATION;
+    private static final int BENCHMARK_ITERATIONS = 10000;
+
+    // Real condition ids and descriptions, including a non-ASCII one and repeats
+    private static final int[] WEATHER_IDS = {800, 801, 500, 500, 211, 600, 741};
+    private static final String[] DESCRIPTIONS =
+            {"Clear", "Clouds", "Rain", "Rain", "Orage", "Légère neige", "Fog"};
+
+    private long mToday;
+    private long mLocationId;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Time time = new Time();
+        time.setToNow();
+        int julianToday = Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+        mToday = time.setJulianDay(julianToday);
+
+        TestUtilities.deleteLocation(mContext, TEST_LOCATION);
+        mLocationId = TestUtilities.insertNorthPoleLocationValues(mContext, TEST_LOCATION);
+
+        ContentValues[] days = new ContentValues[WEATHER_IDS.length];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = createWeatherValues(time.setJulianDay(julianToday + i), i);
+        }
+        mContext.getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, days);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestUtilities.deleteLocation(mContext, TEST_LOCATION);
+        super.tearDown();
+    }
+
+    public void testRoundTripProviderData() {
+        List<ForecastDay> days = WearPublisher.queryForecast(mContext, TEST_LOCATION, mToday,
+                WearContract.FORECAST_DAYS);
+        assertEquals(WEATHER_IDS.length, days.size());
+        assertEquals(mToday, days.get(0).date);
+        assertEquals("Légère neige", days.get(5).description);
+
+        List<ForecastDay> decoded = ForecastCodec.decode(ForecastCodec.encode(days));
+        assertEquals("Error: Decoded forecast doesn't match the provider's", days, decoded);
+    }
+
+    public void testMaxDaysIsRespected() {
+        List<ForecastDay> days = WearPublisher.queryForecast(mContext, TEST_LOCATION, mToday, 3);
+        assertEquals(3, days.size());
+        assertEquals(WEATHER_IDS[2], days.get(2).weatherId);
+    }
+
+    public void testRejectsBadData() {
+        byte[] encoded = ForecastCodec.encode(WearPublisher.queryForecast(mContext,
+                TEST_LOCATION, mToday, WearContract.FORECAST_DAYS));
+
+        byte[] otherVersion = encoded.clone();
+        otherVersion[0] = ForecastCodec.VERSION + 1;
+        byte[][] payloads = {
+                new byte[0],
+                // negative string count
+                new byte[]{ForecastCodec.VERSION, (byte) 0x80, 0, 0},
+                otherVersion,
+                Arrays.copyOf(encoded, encoded.length - 1),
+                Arrays.copyOf(encoded, encoded.length + 1)
+        };
+        for (byte[] payload : payloads) {
+            try {
+                ForecastCodec.decode(payload);
+                fail("Error: Payload of " + payload.length + " bytes should have been rejected");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    public void testEmptyForecast() {
+        List<ForecastDay> days = new ArrayList<>();
+        assertEquals(days, ForecastCodec.decode(ForecastCodec.encode(days)));
+    }
+
+    /*
+        Logs the encode and decode cost, and checks the payload is smaller than the same days
+        sent as nested DataMaps.  Only the size is asserted, it doesn't change from run to run.
+     */
+    public void testBenchmarkEncodeDecode() {
+        List<ForecastDay> days = WearPublisher.queryForecast(mContext, TEST_LOCATION, mToday,
+                WearContract.FORECAST_DAYS);
+        byte[] encoded = ForecastCodec.encode(days);
+        for (int i = 0; i < 1000; i++) {
+            ForecastCodec.decode(ForecastCodec.encode(days));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            ForecastCodec.encode(days);
+        }
+        long encodeNanos = (System.nanoTime() - start) / BENCHMARK_ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            ForecastCodec.decode(encoded);
+        }
+        long decodeNanos = (System.nanoTime() - start) / BENCHMARK_ITERATIONS;
+
+        int dataMapBytes = toDataMap(days).toByteArray().length;
+        Log.i(LOG_TAG, days.size() + " days: encode=" + encodeNanos + "ns, decode="
+                + decodeNanos + "ns, " + encoded.length + " bytes vs " + dataMapBytes
+                + " bytes as DataMaps");
+        assertTrue("Error: The binary forecast should be smaller than the DataMap one",
+                encoded.length < dataMapBytes);
+    }
+
+    private static DataMap toDataMap(List<ForecastDay> days) {
+        ArrayList<DataMap> dayMaps = new ArrayList<>(days.size());
+        for (ForecastDay day : days) {
+            DataMap dayMap = new DataMap();
+            dayMap.putLong("date", day.date);
+            dayMap.putInt("weatherId", day.weatherId);
+            dayMap.putFloat("high", day.high);
+            dayMap.putFloat("low", day.low);
+            dayMap.putFloat("humidity", day.humidity);
+            dayMap.putFloat("pressure", day.pressure);
+            dayMap.putFloat("windSpeed", day.windSpeed);
+            dayMap.putFloat("degrees", day.degrees);
+            dayMap.putString("description", day.description);
+            dayMap.putString("highText", day.highText);
+            dayMap.putString("lowText", day.lowText);
+            dayMaps.add(dayMap);
+        }
+        DataMap dataMap = new DataMap();
+        dataMap.putDataMapArrayList("days", dayMaps);
+        return dataMap;
+    }
+
+    private ContentValues createWeatherValues(long date, int day) {
+        // Every field differs from day to day, so a field swapped in the codec shows up
+        ContentValues values = TestUtilities.createWeatherValues(mLocationId, date);
+        values.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, 45.0 * day);
+        values.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, 60 + day);
+        values.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, 1013.25 - day);
+        values.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, 21.5 - day);
+        values.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, -3.25 + day);
+        values.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, DESCRIPTIONS[day]);
+        values.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, 5.5 + day);
+        values.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, WEATHER_IDS[day]);
+        return values;
+    }
+}
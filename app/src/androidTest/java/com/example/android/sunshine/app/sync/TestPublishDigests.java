@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.shared.ForecastCodec;
+import com.example.android.sunshine.shared.ForecastDay;
+
+import java.util.Arrays;
+
+public class TestPublishDigests extends AndroidTestCase {
+
+    private static final String TEST_PATH = "/test_publish_digests";
+    private static final long TEST_DATE = 1419033600000L;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        clearDigests();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        clearDigests();
+        super.tearDown();
+    }
+
+    public void testFirstPublishIsDisplayed() {
+        ForecastDay today = day(800, 21.5f, "21°");
+        assertEquals(PublishDigests.CHANGE_DISPLAYED, compare(today));
+    }
+
+    public void testUnchangedPayloadIsSkipped() {
+        ForecastDay today = day(800, 21.5f, "21°");
+        record(today);
+        assertEquals("Error: The same payload should not be published again",
+                PublishDigests.CHANGE_NONE, compare(day(800, 21.5f, "21°")));
+    }
+
+    public void testHiddenChangeIsNotUrgent() {
+        record(day(800, 21.5f, "21°"));
+        // 21.4 is still shown as 21°
+        assertEquals(PublishDigests.CHANGE_HIDDEN, compare(day(800, 21.4f, "21°")));
+    }
+
+    public void testDisplayedChangeIsUrgent() {
+        record(day(800, 21.5f, "21°"));
+        assertEquals(PublishDigests.CHANGE_DISPLAYED, compare(day(500, 21.5f, "21°")));
+        assertEquals(PublishDigests.CHANGE_DISPLAYED, compare(day(800, 22.5f, "22°")));
+    }
+
+    public void testPathsAreIndependent() {
+        ForecastDay today = day(800, 21.5f, "21°");
+        record(today);
+        byte[] payload = ForecastCodec.encode(Arrays.asList(today));
+        assertEquals(PublishDigests.CHANGE_DISPLAYED, PublishDigests.compare(mContext,
+                TEST_PATH + "/other", payload, WearPublisher.getDisplayedValues(today)));
+    }
+
+    private void clearDigests() {
+        PreferenceManager.getDefaultSharedPreferences(mContext).edit()
+                .remove(PublishDigests.PREF_PAYLOAD_DIGEST + TEST_PATH)
+                .remove(PublishDigests.PREF_DISPLAYED_DIGEST + TEST_PATH)
+                .apply();
+    }
+
+    private int compare(ForecastDay today) {
+        return PublishDigests.compare(mContext, TEST_PATH,
+                ForecastCodec.encode(Arrays.asList(today)),
+                WearPublisher.getDisplayedValues(today));
+    }
+
+    private void record(ForecastDay today) {
+        PublishDigests.record(mContext, TEST_PATH, ForecastCodec.encode(Arrays.asList(today)),
+                WearPublisher.getDisplayedValues(today));
+    }
+
+    private static ForecastDay day(int weatherId, float high, String highText) {
+        return new ForecastDay(TEST_DATE, weatherId, high, 12f, 80f, 1013f, 5.5f, 270f,
+                "Clear", highText, "12°");
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TestWearPublishQueue extends AndroidTestCase {
+
+    private static final String TEST_PATH = "/test_publish_queue";
+    private static final String TEST_KEY = "TEST";
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private GatedSender mSender;
+    private WearPublishQueue mQueue;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        clearDigests();
+        mSender = new GatedSender();
+        mQueue = new WearPublishQueue(mContext, mSender);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mSender.open();
+        clearDigests();
+        super.tearDown();
+    }
+
+    public void testPublishDoesNotWaitForTheWatch() throws InterruptedException {
+        long start = System.nanoTime();
+        mQueue.publish(TEST_PATH, TEST_KEY, payload(1), payload(1));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Error: publish blocked for " + elapsedMillis + "ms", elapsedMillis < 500);
+
+        mSender.open();
+        mSender.awaitSends(1);
+        assertEquals(Collections.singletonList(TEST_PATH + "#1"), mSender.getSent());
+    }
+
+    public void testLatestPayloadWins() throws InterruptedException {
+        // Hold the queue's thread on the first payload while the others queue up behind it
+        mQueue.publish(TEST_PATH, TEST_KEY, payload(1), payload(1));
+        mSender.awaitStarted();
+        mQueue.publish(TEST_PATH, TEST_KEY, payload(2), payload(2));
+        mQueue.publish(TEST_PATH, TEST_KEY, payload(3), payload(3));
+        mSender.open();
+        mSender.awaitSends(2);
+
+        List<String> expected = new ArrayList<>();
+        expected.add(TEST_PATH + "#1");
+        expected.add(TEST_PATH + "#3");
+        assertEquals("Error: A superseded payload was sent", expected, mSender.getSent());
+    }
+
+    public void testQueueIsBounded() throws InterruptedException {
+        mQueue.publish(TEST_PATH, TEST_KEY, payload(0), payload(0));
+        mSender.awaitStarted();
+        for (int i = 1; i <= WearPublishQueue.MAX_PENDING + 1; i++) {
+            mQueue.publish(TEST_PATH + i, TEST_KEY, payload(i), payload(i));
+        }
+        mSender.open();
+        mSender.awaitSends(WearPublishQueue.MAX_PENDING + 1);
+
+        List<String> sent = mSender.getSent();
+        assertEquals(WearPublishQueue.MAX_PENDING + 1, sent.size());
+        assertFalse("Error: The oldest pending payload should have been dropped",
+                sent.contains(TEST_PATH + "1#1"));
+        assertEquals(TEST_PATH + (WearPublishQueue.MAX_PENDING + 1) + "#"
+                + (WearPublishQueue.MAX_PENDING + 1), sent.get(sent.size() - 1));
+    }
+
+    public void testUnchangedPayloadIsNotSentAgain() throws InterruptedException {
+        mSender.open();
+        mQueue.publish(TEST_PATH, TEST_KEY, payload(1), payload(1));
+        mSender.awaitSends(1);
+        // Jobs run in order, so once the marker is sent the repeat has been handled
+        mQueue.publish(TEST_PATH, TEST_KEY, payload(1), payload(1));
+        mQueue.publish(TEST_PATH + 1, TEST_KEY, payload(9), payload(9));
+        mSender.awaitSends(2);
+        List<String> expected = new ArrayList<>();
+        expected.add(TEST_PATH + "#1");
+        expected.add(TEST_PATH + "1#9");
+        assertEquals("Error: An unchanged payload was sent again", expected, mSender.getSent());
+
+        mQueue.publish(TEST_PATH, TEST_KEY, payload(2), payload(1));
+        mSender.awaitSends(3);
+        assertEquals("Error: Only displayed changes should be urgent",
+                Boolean.FALSE, mSender.getUrgency().get(2));
+    }
+
+    private void clearDigests() {
+        SharedPreferences.Editor editor =
+                PreferenceManager.getDefaultSharedPreferences(mContext).edit();
+        editor.remove(PublishDigests.PREF_PAYLOAD_DIGEST + TEST_PATH)
+                .remove(PublishDigests.PREF_DISPLAYED_DIGEST + TEST_PATH);
+        for (int i = 1; i <= WearPublishQueue.MAX_PENDING + 1; i++) {
+            editor.remove(PublishDigests.PREF_PAYLOAD_DIGEST + TEST_PATH + i)
+                    .remove(PublishDigests.PREF_DISPLAYED_DIGEST + TEST_PATH + i);
+        }
+        editor.apply();
+    }
+
+    private static byte[] payload(int value) {
+        return new byte[]{(byte) value};
+    }
+
+    /**
+     * Records what it's asked to send, holding the queue's thread until opened.
+     */
+    private static class GatedSender implements WearPublishQueue.Sender {
+        private final CountDownLatch mStarted = new CountDownLatch(1);
+        private final CountDownLatch mGate = new CountDownLatch(1);
+        private final List<String> mSent = new ArrayList<>();
+        private final List<Boolean> mUrgency = new ArrayList<>();
+
+        @Override
+        public boolean send(String path, String key, byte[] payload, boolean urgent) {
+            mStarted.countDown();
+            try {
+                mGate.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return false;
+            }
+            synchronized (this) {
+                mSent.add(path + "#" + payload[0]);
+                mUrgency.add(urgent);
+                notifyAll();
+            }
+            return true;
+        }
+
+        @Override
+        public void release() {
+        }
+
+        void open() {
+            mGate.countDown();
+        }
+
+        void awaitStarted() throws InterruptedException {
+            assertTrue(mStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+
+        synchronized void awaitSends(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+            while (mSent.size() < count) {
+                long remaining = deadline - System.currentTimeMillis();
+                assertTrue("Error: Only " + mSent.size() + " of " + count + " payloads were sent",
+                        remaining > 0);
+                wait(remaining);
+            }
+        }
+
+        synchronized List<String> getSent() {
+            return new ArrayList<>(mSent);
+        }
+
+        synchronized List<Boolean> getUrgency() {
+            return new ArrayList<>(mUrgency);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.R;
+
+public class TestWeatherNotificationProducer extends AndroidTestCase {
+
+    private static final int WEATHER_NOTIFICATION_ID = 3004;
+
+    private SharedPreferences mPrefs;
+    private boolean mHadEnabled;
+    private boolean mEnabled;
+    private long mLastNotification;
+    private CountingLoader mLoader;
+    private WeatherNotificationProducer mProducer;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        String enabledKey = mContext.getString(R.string.pref_enable_notifications_key);
+        mHadEnabled = mPrefs.contains(enabledKey);
+        mEnabled = mPrefs.getBoolean(enabledKey, true);
+        mLastNotification = mPrefs.getLong(mContext.getString(R.string.pref_last_notification), 0);
+        mLoader = new CountingLoader();
+        mProducer = new WeatherNotificationProducer(mLoader);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SharedPreferences.Editor editor = mPrefs.edit()
+                .putLong(mContext.getString(R.string.pref_last_notification), mLastNotification);
+        String enabledKey = mContext.getString(R.string.pref_enable_notifications_key);
+        if (mHadEnabled) {
+            editor.putBoolean(enabledKey, mEnabled);
+        } else {
+            editor.remove(enabledKey);
+        }
+        editor.commit();
+        NotificationManager notificationManager =
+                (NotificationManager) mContext.getSystemService(Context.NOTIFICATION_SERVICE);
+        notificationManager.cancel(WEATHER_NOTIFICATION_ID);
+        super.tearDown();
+    }
+
+    public void testNoBitmapWhenNotifiedToday() {
+        setPrefs(true, System.currentTimeMillis());
+        assertFalse("Error: A notification was already shown today", mProducer.isDue(mContext));
+        assertEquals(0, TodayForecast.produce(mContext, mProducer));
+        assertEquals("Error: No bitmap should be loaded when no notification is due",
+                0, mLoader.mLoads);
+    }
+
+    public void testNoBitmapWhenDisabled() {
+        setPrefs(false, 0);
+        assertFalse("Error: Notifications are disabled", mProducer.isDue(mContext));
+        assertEquals(0, TodayForecast.produce(mContext, mProducer));
+        assertEquals("Error: No bitmap should be loaded when notifications are disabled",
+                0, mLoader.mLoads);
+    }
+
+    public void testBitmapLoadedOnceWhenDue() {
+        setPrefs(true, 0);
+        assertTrue("Error: The first notification of the day is due", mProducer.isDue(mContext));
+        mProducer.produce(mContext, new TodayForecast(800, 21, 12, "Clear"));
+        assertEquals("Error: The large icon should be loaded exactly once", 1, mLoader.mLoads);
+        assertFalse("Error: The notification should be marked as shown",
+                mProducer.isDue(mContext));
+    }
+
+    private void setPrefs(boolean enabled, long lastNotification) {
+        mPrefs.edit()
+                .putBoolean(mContext.getString(R.string.pref_enable_notifications_key), enabled)
+                .putLong(mContext.getString(R.string.pref_last_notification), lastNotification)
+                .commit();
+    }
+
+    private static class CountingLoader implements WeatherNotificationProducer.LargeIconLoader {
+        int mLoads;
+
+        @Override
+        public Bitmap load(Context context, String artUrl, int artResourceId, int width,
+                           int height) {
+            mLoads++;
+            return Bitmap.createBitmap(Math.max(1, width), Math.max(1, height),
+                    Bitmap.Config.ARGB_8888);
+        }
+    }
+}
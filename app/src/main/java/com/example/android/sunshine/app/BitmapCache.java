@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.annotation.TargetApi;
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.support.annotation.DrawableRes;
+import android.support.v4.util.LruCache;
+
+/**
+ * Process-wide cache of decoded bitmaps, keyed by source and size, for the code that hands
+ * bitmaps to other processes: the notification, the widgets, the Wear data layer.  Each distinct
+ * icon is decoded once per size instead of once per row or per sync.
+ * <p>
+ * The cache takes a sixteenth of the memory class and gives memory back through onTrimMemory.
+ * Cached bitmaps are shared, so callers must never recycle or modify them.
+ */
+public final class BitmapCache {
+
+    // Use 1/16th of the memory class; the UI has its own caches (Glide's) for the rest.
+    private static final int MEMORY_CLASS_DIVISOR = 16;
+
+    private static LruCache<String, Bitmap> sCache;
+
+    private BitmapCache() {
+    }
+
+    private static synchronized LruCache<String, Bitmap> getCache(Context context) {
+        if (sCache == null) {
+            Context appContext = context.getApplicationContext();
+            ActivityManager am =
+                    (ActivityManager) appContext.getSystemService(Context.ACTIVITY_SERVICE);
+            int maxBytes = am.getMemoryClass() * 1024 * 1024 / MEMORY_CLASS_DIVISOR;
+            sCache = new LruCache<String, Bitmap>(maxBytes) {
+                @Override
+                protected int sizeOf(String key, Bitmap value) {
+                    return value.getRowBytes() * value.getHeight();
+                }
+            };
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+                registerTrimCallbacks(appContext);
+            }
+        }
+        return sCache;
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private static void registerTrimCallbacks(Context appContext) {
+        appContext.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                trimMemory(level);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+            }
+        });
+    }
+
+    /**
+     * Gives memory back according to an onTrimMemory level: everything once the process is in
+     * the background list or memory is critically low, half while it's merely running low.
+     *
+     * @param level level passed to onTrimMemory
+     */
+    public static void trimMemory(int level) {
+        LruCache<String, Bitmap> cache;
+        synchronized (BitmapCache.class) {
+            cache = sCache;
+        }
+        if (cache == null) {
+            return;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            cache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            cache.trimToSize(cache.size() / 2);
+        }
+    }
+
+    /**
+     * @param source where the bitmap came from, e.g. a URL
+     * @param width width the bitmap was loaded at, or 0 for its original width
+     * @param height height the bitmap was loaded at, or 0 for its original height
+     * @return the cache key for that source at that size
+     */
+    public static String key(String source, int width, int height) {
+        return source + '@' + width + 'x' + height;
+    }
+
+    /**
+     * @param context Context used to size the cache on first use
+     * @param key key from {@link #key(String, int, int)}
+     * @return the cached bitmap, or null
+     */
+    public static Bitmap get(Context context, String key) {
+        return getCache(context).get(key);
+    }
+
+    /**
+     * @param context Context used to size the cache on first use
+     * @param key key from {@link #key(String, int, int)}
+     * @param bitmap bitmap to share, it must not be recycled afterwards
+     */
+    public static void put(Context context, String key, Bitmap bitmap) {
+        if (bitmap != null) {
+            getCache(context).put(key, bitmap);
+        }
+    }
+
+    /**
+     * Returns a drawable resource decoded to fit within the given size, keeping its aspect ratio,
+     * decoding it only if it isn't cached yet.
+     *
+     * @param context Context used to reach the resources
+     * @param resId drawable resource id
+     * @param width maximum width, or 0 for the resource's own size
+     * @param height maximum height, or 0 for the resource's own size
+     * @return the decoded bitmap, or null if the resource can't be decoded
+     */
+    public static Bitmap getResource(Context context, @DrawableRes int resId, int width, int height) {
+        LruCache<String, Bitmap> cache = getCache(context);
+        String key = key("res:" + resId, width, height);
+        Bitmap bitmap = cache.get(key);
+        if (bitmap == null) {
+            bitmap = decodeResource(context.getResources(), resId, width, height);
+            if (bitmap != null) {
+                cache.put(key, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    private static Bitmap decodeResource(Resources resources, int resId, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return BitmapFactory.decodeResource(resources, resId);
+        }
+
+        // Subsample while decoding as far as we can without going below the requested size...
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(resources, resId, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= width
+                && options.outHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap decoded = BitmapFactory.decodeResource(resources, resId, options);
+        if (decoded == null) {
+            return null;
+        }
+
+        // ...then scale the rest of the way, like fitCenter.
+        float scale = Math.min((float) width / decoded.getWidth(),
+                (float) height / decoded.getHeight());
+        if (scale >= 1f) {
+            return decoded;
+        }
+        int scaledWidth = Math.max(1, Math.round(decoded.getWidth() * scale));
+        int scaledHeight = Math.max(1, Math.round(decoded.getHeight() * scale));
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, scaledWidth, scaledHeight, true);
+        if (scaled != decoded) {
+            decoded.recycle();
+        }
+        return scaled;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.text.format.Time;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of already formatted day labels ("Today, June 8", "Tomorrow", "Wednesday"...) shared by
+ * the list, the detail view, the widgets and the notification.
+ * <p>
+ * Each instance is one generation of the cache: it is only valid for the local day, time zone
+ * and locale it was created in.  {@link #get(Context)} hands out a new generation at local
+ * midnight and after a time zone or locale change, so stale labels are never returned.
+ * The date formatters are not thread-safe, so every thread gets its own copy.
+ */
+final class DayLabelCache {
+
+    // Kinds of labels that can be cached for a given day
+    static final int KIND_FRIENDLY = 0;
+    static final int KIND_FRIENDLY_LONG_TODAY = 1;
+    static final int KIND_DAY_NAME = 2;
+    static final int KIND_MONTH_DAY = 3;
+    static final int KIND_FULL_FRIENDLY = 4;
+    private static final int KIND_COUNT = 5;
+
+    private static volatile DayLabelCache sCurrent;
+    private static boolean sReceiverRegistered;
+
+    private final Locale mLocale;
+    private final TimeZone mTimeZone;
+    private final long mValidUntil;
+    private final int mCurrentJulianDay;
+    private final ConcurrentHashMap<Integer, String> mLabels = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<Formatters> mFormatters = new ThreadLocal<Formatters>() {
+        @Override
+        protected Formatters initialValue() {
+            return new Formatters(mLocale, mTimeZone);
+        }
+    };
+
+    private DayLabelCache(long now) {
+        mLocale = Locale.getDefault();
+        mTimeZone = TimeZone.getDefault();
+        mCurrentJulianDay = Time.getJulianDay(now, mTimeZone.getOffset(now) / 1000);
+
+        Calendar midnight = Calendar.getInstance(mTimeZone, mLocale);
+        midnight.setTimeInMillis(now);
+        midnight.set(Calendar.HOUR_OF_DAY, 0);
+        midnight.set(Calendar.MINUTE, 0);
+        midnight.set(Calendar.SECOND, 0);
+        midnight.set(Calendar.MILLISECOND, 0);
+        midnight.add(Calendar.DAY_OF_YEAR, 1);
+        mValidUntil = midnight.getTimeInMillis();
+    }
+
+    /**
+     * Returns the cache generation for the current day, time zone and locale.
+     *
+     * @param context Context used to listen for time zone and locale changes
+     * @return the current cache generation
+     */
+    static DayLabelCache get(Context context) {
+        registerReceiver(context);
+        return current();
+    }
+
+    /**
+     * Same as {@link #get(Context)} for callers without a Context.  Time zone changes are only
+     * noticed once some caller has passed a Context in.
+     */
+    static DayLabelCache current() {
+        long now = System.currentTimeMillis();
+        DayLabelCache cache = sCurrent;
+        // Locale.getDefault() hands out the same instance until the configuration changes,
+        // so this is a cheap reference check.
+        if (cache == null || now >= cache.mValidUntil || cache.mLocale != Locale.getDefault()) {
+            cache = new DayLabelCache(now);
+            sCurrent = cache;
+        }
+        return cache;
+    }
+
+    private static synchronized void registerReceiver(Context context) {
+        if (sReceiverRegistered) {
+            return;
+        }
+        sReceiverRegistered = true;
+        IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+        filter.addAction(Intent.ACTION_DATE_CHANGED);
+        filter.addAction(Intent.ACTION_TIME_CHANGED);
+        context.getApplicationContext().registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                sCurrent = null;
+            }
+        }, filter);
+    }
+
+    int getCurrentJulianDay() {
+        return mCurrentJulianDay;
+    }
+
+    /**
+     * Returns the local julian day for the given date, using the current offset from GMT just
+     * like the labels do.
+     */
+    int getJulianDay(long dateInMillis) {
+        return Time.getJulianDay(dateInMillis,
+                mTimeZone.getOffset(System.currentTimeMillis()) / 1000);
+    }
+
+    String getLabel(int julianDay, int kind) {
+        return mLabels.get(julianDay * KIND_COUNT + kind);
+    }
+
+    String putLabel(int julianDay, int kind, String label) {
+        mLabels.put(julianDay * KIND_COUNT + kind, label);
+        return label;
+    }
+
+    String formatShortDate(long dateInMillis) {
+        return mFormatters.get().shortDate.format(dateInMillis);
+    }
+
+    String formatDayName(long dateInMillis) {
+        return mFormatters.get().dayName.format(dateInMillis);
+    }
+
+    String formatMonthDay(long dateInMillis) {
+        return mFormatters.get().monthDay.format(dateInMillis);
+    }
+
+    String formatDate(long dateInMillis) {
+        return mFormatters.get().date.format(dateInMillis);
+    }
+
+    /**
+     * The formatters used to build labels, confined to a single thread.
+     */
+    private static class Formatters {
+        final SimpleDateFormat shortDate;
+        final SimpleDateFormat dayName;
+        final SimpleDateFormat monthDay;
+        final DateFormat date;
+
+        Formatters(Locale locale, TimeZone timeZone) {
+            shortDate = new SimpleDateFormat("EEE MMM dd", locale);
+            dayName = new SimpleDateFormat("EEEE", locale);
+            monthDay = new SimpleDateFormat("MMMM dd", locale);
+            date = DateFormat.getDateInstance(DateFormat.DEFAULT, locale);
+            shortDate.setTimeZone(timeZone);
+            dayName.setTimeZone(timeZone);
+            monthDay.setTimeZone(timeZone);
+            date.setTimeZone(timeZone);
+        }
+    }
+}
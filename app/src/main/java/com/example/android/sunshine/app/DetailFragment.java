@@ -38,13 +38,15 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
 /**
  * A placeholder fragment containing a simple view.
  */
-public class DetailFragment extends Fragment implements LoaderManager.LoaderCallbacks<Cursor> {
+public class DetailFragment extends Fragment
+        implements LoaderManager.LoaderCallbacks<Cursor>, DetailPrefetchCache.Listener {
 
     private static final String LOG_TAG = DetailFragment.class.getSimpleName();
     static final String DETAIL_URI = "URI";
@@ -55,6 +57,8 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
     private String mForecast;
     private Uri mUri;
     private boolean mTransitionAnimation;
+    // Only used when the detail pane sits next to the forecast list, see setUri.
+    private DetailPrefetchCache mPrefetchCache;
 
     private static final int DETAIL_LOADER = 0;
 
@@ -103,6 +107,22 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
         setHasOptionsMenu(true);
     }
 
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        if ( !(getActivity() instanceof DetailActivity) ) {
+            mPrefetchCache = new DetailPrefetchCache(getActivity(), DETAIL_COLUMNS, this);
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        if (null != mPrefetchCache) {
+            mPrefetchCache.close();
+        }
+        super.onDestroy();
+    }
+
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
@@ -112,6 +132,10 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
             mUri = arguments.getParcelable(DetailFragment.DETAIL_URI);
             mTransitionAnimation = arguments.getBoolean(DetailFragment.DETAIL_TRANSITION_ANIMATION, false);
         }
+        // setUri may have moved us on from the uri in the arguments
+        if (savedInstanceState != null && savedInstanceState.containsKey(DETAIL_URI)) {
+            mUri = savedInstanceState.getParcelable(DETAIL_URI);
+        }
 
         View rootView = inflater.inflate(R.layout.fragment_detail_start, container, false);
         mIconView = (ImageView) rootView.findViewById(R.id.detail_icon);
@@ -157,6 +181,45 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
         super.onActivityCreated(savedInstanceState);
     }
 
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        if (null != mUri) {
+            outState.putParcelable(DETAIL_URI, mUri);
+        }
+        super.onSaveInstanceState(outState);
+    }
+
+    /**
+     * Shows another day in this fragment, keeping the views.  Days around the previous one are
+     * usually prefetched already, in which case no query is needed.
+     *
+     * @param uri weather uri for the location and date to show
+     */
+    void setUri(Uri uri) {
+        if (uri.equals(mUri)) {
+            return;
+        }
+        mUri = uri;
+        Cursor cached = null != mPrefetchCache ? mPrefetchCache.get(uri) : null;
+        if (null != cached) {
+            // The cache tells us when the data changes, no need to keep a loader around.
+            getLoaderManager().destroyLoader(DETAIL_LOADER);
+            bindDetail(cached);
+            cached.close();
+            mPrefetchCache.prefetch(uri);
+        } else {
+            getLoaderManager().restartLoader(DETAIL_LOADER, null, this);
+        }
+    }
+
+    @Override
+    public void onInvalidated() {
+        // A running loader reloads by itself.
+        if (null != mUri && isAdded() && null == getLoaderManager().getLoader(DETAIL_LOADER)) {
+            getLoaderManager().restartLoader(DETAIL_LOADER, null, this);
+        }
+    }
+
     void onLocationChanged( String newLocation ) {
         // replace the uri, since the location has changed
         Uri uri = mUri;
@@ -191,6 +254,13 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
 
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
+        bindDetail(data);
+        if (null != mPrefetchCache && null != mUri) {
+            mPrefetchCache.prefetch(mUri);
+        }
+    }
+
+    private void bindDetail(Cursor data) {
         if (data != null && data.moveToFirst()) {
             ViewParent vp = getView().getParent();
             if ( vp instanceof CardView ) {
@@ -206,6 +276,7 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
                 // Use weather art image
                 Glide.with(this)
                         .load(Utility.getArtUrlForWeatherCondition(getActivity(), weatherId))
+                        .diskCacheStrategy(DiskCacheStrategy.ALL)
                         .error(Utility.getArtResourceForWeatherCondition(weatherId))
                         .crossFade()
                         .into(mIconView);
@@ -243,7 +314,7 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
 
             // Read humidity from cursor and update view
             float humidity = data.getFloat(COL_WEATHER_HUMIDITY);
-            mHumidityView.setText(getActivity().getString(R.string.format_humidity, humidity));
+            mHumidityView.setText(UnitFormatter.format(getActivity(), R.string.format_humidity, humidity));
             mHumidityView.setContentDescription(getString(R.string.a11y_humidity, mHumidityView.getText()));
             mHumidityLabelView.setContentDescription(mHumidityView.getContentDescription());
 
@@ -256,7 +327,7 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
 
             // Read pressure from cursor and update view
             float pressure = data.getFloat(COL_WEATHER_PRESSURE);
-            mPressureView.setText(getString(R.string.format_pressure, pressure));
+            mPressureView.setText(UnitFormatter.format(getActivity(), R.string.format_pressure, pressure));
             mPressureView.setContentDescription(getString(R.string.a11y_pressure, mPressureView.getText()));
             mPressureLabelView.setContentDescription(mPressureView.getContentDescription());
 
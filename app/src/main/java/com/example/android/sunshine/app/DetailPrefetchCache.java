@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.LruCache;
+import android.text.format.Time;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Detail rows for the days around the one being shown, so moving the selection up or down the
+ * forecast list can rebind the detail pane without waiting on the provider.
+ * <p>
+ * One query, starting the day before the selected day, fills the cache with every day that
+ * follows.  Any change to the weather table empties the cache and tells the listener.
+ */
+class DetailPrefetchCache {
+
+    interface Listener {
+        /**
+         * Called on the main thread when the weather data changed and the cache was emptied.
+         */
+        void onInvalidated();
+    }
+
+    // A forecast is 14 days, plus the day before the selection.
+    private static final int MAX_ROWS = 16;
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    private final Context mContext;
+    private final String[] mColumns;
+    private final Listener mListener;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<Uri, Object[]> mRows = new LruCache<>(MAX_ROWS);
+    private final ContentObserver mObserver;
+    // Bumped on every invalidation so prefetches started before it don't refill the cache.
+    private volatile int mGeneration;
+
+    /**
+     * @param context Context used to query the provider
+     * @param columns projection the rows are read with, the first column being the row id and
+     *                the second the date
+     * @param listener told when the cache is emptied because the data changed
+     */
+    DetailPrefetchCache(Context context, String[] columns, Listener listener) {
+        mContext = context.getApplicationContext();
+        mColumns = columns;
+        mListener = listener;
+        mObserver = new ContentObserver(mHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                mGeneration++;
+                mRows.evictAll();
+                mListener.onInvalidated();
+            }
+        };
+        mContext.getContentResolver().registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI, true, mObserver);
+    }
+
+    /**
+     * @param uri weather uri for a location and date
+     * @return a single-row cursor with the cached row for the uri, or null if it isn't cached
+     */
+    Cursor get(Uri uri) {
+        Object[] row = mRows.get(uri);
+        if (row == null) {
+            return null;
+        }
+        MatrixCursor cursor = new MatrixCursor(mColumns, 1);
+        cursor.addRow(row);
+        return cursor;
+    }
+
+    /**
+     * Loads the rows from the day before the given day onwards in the background, unless they
+     * are cached already.
+     *
+     * @param uri weather uri for a location and date
+     */
+    void prefetch(Uri uri) {
+        final String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
+        long date = WeatherContract.WeatherEntry.getDateFromUri(uri);
+        Time time = new Time();
+        time.set(date);
+        final long previousDay = time.setJulianDay(Time.getJulianDay(date, time.gmtoff) - 1);
+        if (null != mRows.get(uri) && null != mRows.get(
+                WeatherContract.WeatherEntry.buildWeatherLocationWithDate(locationSetting, previousDay))) {
+            // Everything from the day before onwards came with an earlier prefetch.
+            return;
+        }
+        final int generation = mGeneration;
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Cursor cursor = mContext.getContentResolver().query(
+                        WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                                locationSetting, previousDay),
+                        mColumns,
+                        null,
+                        null,
+                        WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+                if (cursor == null) {
+                    return;
+                }
+                try {
+                    int columnCount = cursor.getColumnCount();
+                    while (cursor.moveToNext() && cursor.getPosition() < MAX_ROWS) {
+                        if (generation != mGeneration) {
+                            return;
+                        }
+                        Object[] row = new Object[columnCount];
+                        for (int i = 0; i < columnCount; i++) {
+                            row[i] = readColumn(cursor, i);
+                        }
+                        mRows.put(WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
+                                locationSetting, cursor.getLong(1)), row);
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops listening for changes.  The cache must not be used afterwards.
+     */
+    void close() {
+        mContext.getContentResolver().unregisterContentObserver(mObserver);
+        mRows.evictAll();
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static Object readColumn(Cursor cursor, int column) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            // MatrixCursor parses strings back into numbers when asked for one.
+            return cursor.getString(column);
+        }
+        switch (cursor.getType(column)) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                return cursor.getLong(column);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return cursor.getDouble(column);
+            case Cursor.FIELD_TYPE_NULL:
+                return null;
+            default:
+                return cursor.getString(column);
+        }
+    }
+}
@@ -17,6 +17,7 @@ package com.example.android.sunshine.app;
 
 import android.annotation.TargetApi;
 import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.res.TypedArray;
@@ -65,7 +66,7 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     private static final int FORECAST_LOADER = 0;
     // For the forecast view we're showing only a small subset of the stored data.
     // Specify the columns we need.
-    private static final String[] FORECAST_COLUMNS = {
+    static final String[] FORECAST_COLUMNS = {
             // In this case the id needs to be fully qualified with a table name, since
             // the content provider joins the location & weather tables in the background
             // (both have an _id column)
@@ -259,6 +260,25 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         if ( mHoldForTransition ) {
             getActivity().supportPostponeEnterTransition();
         }
+        // On a fresh start, show the last forecast we rendered while the loader opens the
+        // database.  The loader's cursor replaces it in onLoadFinished.
+        if (getLoaderManager().getLoader(FORECAST_LOADER) == null) {
+            ForecastSnapshot.read(getActivity(), Utility.getPreferredLocation(getActivity()),
+                    new ForecastSnapshot.Callback() {
+                        @Override
+                        public void onSnapshotRead(Cursor snapshot) {
+                            if (null == snapshot) {
+                                return;
+                            }
+                            // Too late if the loader got there first
+                            if (isAdded() && null == mForecastAdapter.getCursor()) {
+                                mForecastAdapter.swapCursor(snapshot);
+                            } else {
+                                snapshot.close();
+                            }
+                        }
+                    });
+        }
         getLoaderManager().initLoader(FORECAST_LOADER, null, this);
         super.onActivityCreated(savedInstanceState);
     }
@@ -316,7 +336,7 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
                 locationSetting, System.currentTimeMillis());
 
-        return new CursorLoader(getActivity(),
+        return new SnapshotCursorLoader(getActivity(),
                 weatherForLocationUri,
                 FORECAST_COLUMNS,
                 null,
@@ -435,4 +455,24 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
             updateEmptyView();
         }
     }
-}
\ No newline at end of file
+
+    /*
+        Saves each forecast it loads as the snapshot, on the loader's thread so the rows are
+        copied off the UI thread.
+     */
+    private static class SnapshotCursorLoader extends CursorLoader {
+        SnapshotCursorLoader(Context context, Uri uri, String[] projection, String selection,
+                             String[] selectionArgs, String sortOrder) {
+            super(context, uri, projection, selection, selectionArgs, sortOrder);
+        }
+
+        @Override
+        public Cursor loadInBackground() {
+            Cursor cursor = super.loadInBackground();
+            if (cursor != null) {
+                ForecastSnapshot.save(getContext(), cursor);
+            }
+            return cursor;
+        }
+    }
+}
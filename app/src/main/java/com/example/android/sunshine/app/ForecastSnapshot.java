@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.AtomicFile;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compact binary copy of the last forecast list we rendered, so a cold start can show the list
+ * before the database is even opened.  The snapshot is a single small file read in one go and
+ * turned into a {@link MatrixCursor} with the {@link ForecastFragment} columns; the live loader
+ * replaces it as soon as it delivers.
+ * <p>
+ * File layout (big endian): magic, version, location setting, latitude, longitude, row count,
+ * then per row: id, date, condition id, max, min, short description.
+ */
+public final class ForecastSnapshot {
+
+    private static final String LOG_TAG = ForecastSnapshot.class.getSimpleName();
+
+    private static final String FILE_NAME = "forecast_snapshot.bin";
+    private static final int MAGIC = 0x53554e53;
+    private static final int VERSION = 1;
+    // Anything bigger than this is not a snapshot we wrote.
+    private static final int MAX_FILE_SIZE = 64 * 1024;
+
+    // Same names and order as ForecastFragment.FORECAST_COLUMNS, so the COL_* indices apply.
+    private static final String[] COLUMNS = {
+            WeatherContract.WeatherEntry._ID,
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.LocationEntry.COLUMN_COORD_LAT,
+            WeatherContract.LocationEntry.COLUMN_COORD_LONG
+    };
+
+    // Reads and writes are serialized here so the file always ends up with the newest snapshot,
+    // and a read sees every write queued before it.
+    private static final ExecutorService sWriter = Executors.newSingleThreadExecutor();
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    // Bytes of the last snapshot written by this process, to skip rewriting identical data.
+    private static byte[] sLastWritten;
+
+    /**
+     * Receives a snapshot read by {@link #read(Context, String, Callback)}, on the main thread.
+     */
+    public interface Callback {
+        /**
+         * @param snapshot a cursor with the ForecastFragment columns, or null if there is no
+         *                 usable snapshot
+         */
+        void onSnapshotRead(Cursor snapshot);
+    }
+
+    private ForecastSnapshot() {
+    }
+
+    /**
+     * Reads the snapshot for the given location in the background, like
+     * {@link #read(Context, String)}.
+     *
+     * @param context Context used to find the snapshot file
+     * @param locationSetting the location the forecast is shown for
+     * @param callback called on the main thread with the snapshot
+     */
+    public static void read(Context context, final String locationSetting,
+                            final Callback callback) {
+        final Context appContext = context.getApplicationContext();
+        sWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Cursor snapshot = read(appContext, locationSetting);
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onSnapshotRead(snapshot);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Reads the snapshot for the given location.  Days before today are dropped, just like the
+     * forecast query drops them.  Blocks on the disk, so it must not be called from the UI thread.
+     *
+     * @param context Context used to find the snapshot file
+     * @param locationSetting the location the forecast is shown for
+     * @return a cursor with the ForecastFragment columns, or null if there is no usable snapshot
+     */
+    public static Cursor read(Context context, String locationSetting) {
+        AtomicFile file = getFile(context);
+        if (!file.getBaseFile().exists() || file.getBaseFile().length() > MAX_FILE_SIZE) {
+            return null;
+        }
+        try {
+            byte[] bytes = file.readFully();
+            return decode(bytes, locationSetting,
+                    WeatherContract.normalizeDate(System.currentTimeMillis()));
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Couldn't read the forecast snapshot", e);
+            return null;
+        }
+    }
+
+    /**
+     * Saves the rows of a forecast cursor as the new snapshot.  The rows are copied on the calling
+     * thread, so it should be a background one; the file is written in the background.
+     *
+     * @param context Context used to find the snapshot file
+     * @param cursor cursor with the ForecastFragment columns
+     */
+    public static void save(Context context, Cursor cursor) {
+        final byte[] bytes = encode(cursor);
+        if (bytes == null) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        sWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(appContext, bytes);
+            }
+        });
+    }
+
+    /**
+     * Queries the forecast for the preferred location and saves it as the new snapshot.  Used
+     * after a sync, when no forecast list may be around to do it.
+     *
+     * @param context Context used to query the forecast
+     */
+    public static void refresh(Context context) {
+        String locationSetting = Utility.getPreferredLocation(context);
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                        locationSetting, System.currentTimeMillis()),
+                ForecastFragment.FORECAST_COLUMNS,
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor == null) {
+            return;
+        }
+        try {
+            save(context, cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /*
+        Blocks until every pending write has reached the disk.
+     */
+    static void flush() {
+        try {
+            sWriter.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+        } catch (InterruptedException | ExecutionException e) {
+            Log.w(LOG_TAG, "Interrupted while flushing the forecast snapshot", e);
+        }
+    }
+
+    static synchronized void delete(Context context) {
+        getFile(context).delete();
+        sLastWritten = null;
+    }
+
+    private static AtomicFile getFile(Context context) {
+        return new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    private static synchronized void write(Context context, byte[] bytes) {
+        if (Arrays.equals(bytes, sLastWritten)) {
+            return;
+        }
+        AtomicFile file = getFile(context);
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            out.write(bytes);
+            file.finishWrite(out);
+            sLastWritten = bytes;
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Couldn't write the forecast snapshot", e);
+            if (out != null) {
+                file.failWrite(out);
+            }
+        }
+    }
+
+    /*
+        Returns null for an empty cursor, there is nothing worth showing from an empty snapshot.
+     */
+    static byte[] encode(Cursor cursor) {
+        int count = cursor.getCount();
+        if (count == 0 || !cursor.moveToFirst()) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + count * 48);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(cursor.getString(ForecastFragment.COL_LOCATION_SETTING));
+            out.writeDouble(cursor.getDouble(ForecastFragment.COL_COORD_LAT));
+            out.writeDouble(cursor.getDouble(ForecastFragment.COL_COORD_LONG));
+            out.writeInt(count);
+            do {
+                out.writeLong(cursor.getLong(ForecastFragment.COL_WEATHER_ID));
+                out.writeLong(cursor.getLong(ForecastFragment.COL_WEATHER_DATE));
+                out.writeInt(cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID));
+                out.writeDouble(cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP));
+                out.writeDouble(cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP));
+                String description = cursor.getString(ForecastFragment.COL_WEATHER_DESC);
+                out.writeUTF(description == null ? "" : description);
+            } while (cursor.moveToNext());
+        } catch (IOException e) {
+            // ByteArrayOutputStream doesn't throw
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Cursor decode(byte[] bytes, String locationSetting, long today) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            return null;
+        }
+        String location = in.readUTF();
+        if (!location.equals(locationSetting)) {
+            return null;
+        }
+        double latitude = in.readDouble();
+        double longitude = in.readDouble();
+        int count = in.readInt();
+
+        MatrixCursor cursor = new MatrixCursor(COLUMNS, count);
+        for (int i = 0; i < count; i++) {
+            long id = in.readLong();
+            long date = in.readLong();
+            int conditionId = in.readInt();
+            double max = in.readDouble();
+            double min = in.readDouble();
+            String description = in.readUTF();
+            if (date < today) {
+                continue;
+            }
+            cursor.addRow(new Object[]{
+                    id, date, description, max, min, location, conditionId, latitude, longitude
+            });
+        }
+        if (cursor.getCount() == 0) {
+            cursor.close();
+            return null;
+        }
+        return cursor;
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.example.android.sunshine.app;
 
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.net.Uri;
@@ -45,6 +46,9 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
 
     private boolean mTwoPane;
     private String mLocation;
+    private StartupScheduler mStartupScheduler;
+    // Written by the play-services startup task, read by the gcm-registration one.
+    private volatile boolean mPlayServicesAvailable;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -89,24 +93,51 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
                     WeatherContract.WeatherEntry.getDateFromUri(contentUri));
         }
 
-        SunshineSyncAdapter.initializeSyncAdapter(this);
+        // Nothing below is needed to draw the forecast, so it waits until the first frame is up.
+        final Context appContext = getApplicationContext();
+        mStartupScheduler = new StartupScheduler(getWindow().getDecorView());
+        mStartupScheduler.add("sync-account", StartupScheduler.PRIORITY_DEFERRED, new Runnable() {
+            @Override
+            public void run() {
+                SunshineSyncAdapter.initializeSyncAdapter(appContext);
+            }
+        });
 
         // If Google Play Services is up to date, we'll want to register GCM. If it is not, we'll
         // skip the registration and this device will not receive any downstream messages from
         // our fake server. Because weather alerts are not a core feature of the app, this should
         // not affect the behavior of the app, from a user perspective.
-        if (checkPlayServices()) {
-            // Because this is the initial creation of the app, we'll want to be certain we have
-            // a token. If we do not, then we will start the IntentService that will register this
-            // application with GCM.
-            SharedPreferences sharedPreferences =
-                    PreferenceManager.getDefaultSharedPreferences(this);
-            boolean sentToken = sharedPreferences.getBoolean(SENT_TOKEN_TO_SERVER, false);
-            if (!sentToken) {
-                Intent intent = new Intent(this, RegistrationIntentService.class);
-                startService(intent);
+        mStartupScheduler.add("play-services", StartupScheduler.PRIORITY_DEFERRED, new Runnable() {
+            @Override
+            public void run() {
+                mPlayServicesAvailable = checkPlayServices();
             }
-        }
+        });
+        mStartupScheduler.add("gcm-registration", StartupScheduler.PRIORITY_IDLE, new Runnable() {
+            @Override
+            public void run() {
+                if (!mPlayServicesAvailable) {
+                    return;
+                }
+                // Because this is the initial creation of the app, we'll want to be certain we have
+                // a token. If we do not, then we will start the IntentService that will register this
+                // application with GCM.
+                SharedPreferences sharedPreferences =
+                        PreferenceManager.getDefaultSharedPreferences(appContext);
+                boolean sentToken = sharedPreferences.getBoolean(SENT_TOKEN_TO_SERVER, false);
+                if (!sentToken) {
+                    Intent intent = new Intent(appContext, RegistrationIntentService.class);
+                    appContext.startService(intent);
+                }
+            }
+        });
+        mStartupScheduler.start();
+    }
+
+    @Override
+    protected void onDestroy() {
+        mStartupScheduler.cancel();
+        super.onDestroy();
     }
 
     @Override
@@ -153,7 +184,14 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
     @Override
     public void onItemSelected(Uri contentUri, ForecastAdapter.ForecastAdapterViewHolder vh) {
         if (mTwoPane) {
-            // In two-pane mode, show the detail view in this activity by
+            // In two-pane mode, the detail fragment we already have can simply show the new day.
+            DetailFragment df = (DetailFragment)getSupportFragmentManager().findFragmentByTag(DETAILFRAGMENT_TAG);
+            if ( null != df && df.isAdded() ) {
+                df.setUri(contentUri);
+                return;
+            }
+
+            // Otherwise, show the detail view in this activity by
             // adding or replacing the detail fragment using a
             // fragment transaction.
             Bundle args = new Bundle();
@@ -182,16 +220,25 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
      * the Google Play Store or enable it in the device's system settings.
      */
     private boolean checkPlayServices() {
-        GoogleApiAvailability apiAvailability = GoogleApiAvailability.getInstance();
-        int resultCode = apiAvailability.isGooglePlayServicesAvailable(this);
+        final GoogleApiAvailability apiAvailability = GoogleApiAvailability.getInstance();
+        final int resultCode = apiAvailability.isGooglePlayServicesAvailable(this);
         if (resultCode != ConnectionResult.SUCCESS) {
-            if (apiAvailability.isUserResolvableError(resultCode)) {
-                apiAvailability.getErrorDialog(this, resultCode,
-                        PLAY_SERVICES_RESOLUTION_REQUEST).show();
-            } else {
-                Log.i(LOG_TAG, "This device is not supported.");
-                finish();
-            }
+            // This runs on the startup thread, the dialog has to be shown from the UI thread.
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (isFinishing()) {
+                        return;
+                    }
+                    if (apiAvailability.isUserResolvableError(resultCode)) {
+                        apiAvailability.getErrorDialog(MainActivity.this, resultCode,
+                                PLAY_SERVICES_RESOLUTION_REQUEST).show();
+                    } else {
+                        Log.i(LOG_TAG, "This device is not supported.");
+                        finish();
+                    }
+                }
+            });
             return false;
         }
         return true;
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+/**
+ * Immutable copy of the user preferences that are read on hot paths (adapter binds, widget rows,
+ * the sync).  The snapshot is built once per process and rebuilt only when one of the preferences
+ * it mirrors changes, so readers never touch {@link SharedPreferences} or resources and never
+ * take a lock.
+ */
+public final class PreferenceSnapshot {
+
+    private static volatile PreferenceSnapshot sSnapshot;
+
+    // SharedPreferences only keeps a weak reference to its listeners, so we hold on to ours.
+    private static SharedPreferences.OnSharedPreferenceChangeListener sListener;
+
+    public final String location;
+    public final boolean latLonAvailable;
+    public final float latitude;
+    public final float longitude;
+    public final boolean metric;
+    public final boolean localGraphics;
+    public final String artPackFormat;
+
+    // Art pack URLs for the current pack, preformatted and indexed by WeatherConditions slug.
+    private final String[] mArtUrls;
+
+    private PreferenceSnapshot(Context context, SharedPreferences prefs) {
+        location = prefs.getString(context.getString(R.string.pref_location_key),
+                context.getString(R.string.pref_location_default));
+
+        String latitudeKey = context.getString(R.string.pref_location_latitude);
+        String longitudeKey = context.getString(R.string.pref_location_longitude);
+        latLonAvailable = prefs.contains(latitudeKey) && prefs.contains(longitudeKey);
+        latitude = prefs.getFloat(latitudeKey, Utility.DEFAULT_LATLONG);
+        longitude = prefs.getFloat(longitudeKey, Utility.DEFAULT_LATLONG);
+
+        String metricUnits = context.getString(R.string.pref_units_metric);
+        metric = prefs.getString(context.getString(R.string.pref_units_key), metricUnits)
+                .equals(metricUnits);
+
+        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
+        artPackFormat = prefs.getString(context.getString(R.string.pref_art_pack_key),
+                sunshineArtPack);
+        localGraphics = artPackFormat.equals(sunshineArtPack);
+        mArtUrls = WeatherConditions.formatArtUrls(artPackFormat);
+    }
+
+    /**
+     * @param slug art slug from {@link WeatherConditions#getSlug(int)}
+     * @return the art URL for the slug in the current art pack, or null for no slug
+     */
+    public String getArtUrl(int slug) {
+        return slug == WeatherConditions.SLUG_NONE ? null : mArtUrls[slug];
+    }
+
+    /**
+     * Returns the current snapshot, building it (and starting to listen for changes) on first use.
+     *
+     * @param context Context used to reach the default SharedPreferences
+     * @return the current preference snapshot
+     */
+    public static PreferenceSnapshot get(Context context) {
+        PreferenceSnapshot snapshot = sSnapshot;
+        if (snapshot == null) {
+            snapshot = init(context.getApplicationContext());
+        }
+        return snapshot;
+    }
+
+    private static synchronized PreferenceSnapshot init(final Context appContext) {
+        if (sSnapshot != null) {
+            return sSnapshot;
+        }
+        final SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(appContext);
+        sListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+            @Override
+            public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                if (isSnapshotKey(appContext, key)) {
+                    rebuild(appContext, sharedPreferences);
+                }
+            }
+        };
+        prefs.registerOnSharedPreferenceChangeListener(sListener);
+        sSnapshot = new PreferenceSnapshot(appContext, prefs);
+        return sSnapshot;
+    }
+
+    private static synchronized void rebuild(Context appContext, SharedPreferences prefs) {
+        sSnapshot = new PreferenceSnapshot(appContext, prefs);
+    }
+
+    private static boolean isSnapshotKey(Context context, String key) {
+        return key == null
+                || key.equals(context.getString(R.string.pref_location_key))
+                || key.equals(context.getString(R.string.pref_location_latitude))
+                || key.equals(context.getString(R.string.pref_location_longitude))
+                || key.equals(context.getString(R.string.pref_units_key))
+                || key.equals(context.getString(R.string.pref_art_pack_key));
+    }
+}
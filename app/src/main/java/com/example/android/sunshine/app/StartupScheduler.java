@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.support.annotation.IntDef;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the work an activity needs at startup according to how urgent it is, so that only what the
+ * first frame really depends on runs before it.
+ * <ul>
+ * <li>{@link #PRIORITY_CRITICAL} tasks run right away on the calling thread.</li>
+ * <li>{@link #PRIORITY_DEFERRED} tasks run on a background thread once the first frame has been
+ * drawn.</li>
+ * <li>{@link #PRIORITY_IDLE} tasks run on the same background thread, after the deferred ones,
+ * once the main thread has gone idle.</li>
+ * </ul>
+ * Background tasks run one at a time in the order they were added.  Every task is timed and the
+ * timings are logged.
+ */
+final class StartupScheduler {
+
+    private static final String LOG_TAG = StartupScheduler.class.getSimpleName();
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({PRIORITY_CRITICAL, PRIORITY_DEFERRED, PRIORITY_IDLE})
+    public @interface Priority {}
+
+    public static final int PRIORITY_CRITICAL = 0;
+    public static final int PRIORITY_DEFERRED = 1;
+    public static final int PRIORITY_IDLE = 2;
+
+    // Shared by every activity, startup work doesn't need more than one thread.
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    private final View mFirstFrameView;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final List<Task> mDeferred = new ArrayList<>();
+    private final List<Task> mIdle = new ArrayList<>();
+    private volatile boolean mCancelled;
+    private long mStartTime;
+
+    /**
+     * @param firstFrameView view whose first draw marks the end of the critical startup phase,
+     *                       usually the window decor view
+     */
+    StartupScheduler(View firstFrameView) {
+        mFirstFrameView = firstFrameView;
+    }
+
+    /**
+     * Adds a startup task.  Critical tasks run immediately, the others are queued until
+     * {@link #start()}.
+     *
+     * @param name name used for the timings
+     * @param priority when the task should run
+     * @param task the work to do
+     */
+    void add(String name, @Priority int priority, Runnable task) {
+        Task entry = new Task(name, task);
+        switch (priority) {
+            case PRIORITY_CRITICAL:
+                entry.run();
+                break;
+            case PRIORITY_DEFERRED:
+                mDeferred.add(entry);
+                break;
+            default:
+                mIdle.add(entry);
+        }
+    }
+
+    /**
+     * Waits for the first frame, then hands deferred and idle tasks to the background thread.
+     */
+    void start() {
+        mStartTime = SystemClock.uptimeMillis();
+        final ViewTreeObserver observer = mFirstFrameView.getViewTreeObserver();
+        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                mFirstFrameView.getViewTreeObserver().removeOnPreDrawListener(this);
+                // Posting from the pre-draw pass lands right after this frame is drawn.
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onFirstFrame();
+                    }
+                });
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Drops every task that hasn't started yet.  Call it when the activity is destroyed.
+     */
+    void cancel() {
+        mCancelled = true;
+    }
+
+    private void onFirstFrame() {
+        if (mCancelled) {
+            return;
+        }
+        Log.d(LOG_TAG, "First frame " + (SystemClock.uptimeMillis() - mStartTime)
+                + "ms after startup was scheduled");
+        for (Task task : mDeferred) {
+            sExecutor.execute(task);
+        }
+        mDeferred.clear();
+        if (mIdle.isEmpty()) {
+            return;
+        }
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                for (Task task : mIdle) {
+                    sExecutor.execute(task);
+                }
+                mIdle.clear();
+                return false;
+            }
+        });
+    }
+
+    private class Task implements Runnable {
+        final String mName;
+        final Runnable mTask;
+
+        Task(String name, Runnable task) {
+            mName = name;
+            mTask = task;
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled) {
+                return;
+            }
+            long start = SystemClock.uptimeMillis();
+            mTask.run();
+            long duration = SystemClock.uptimeMillis() - start;
+            Log.d(LOG_TAG, "Startup task " + mName + " took " + duration + "ms");
+        }
+    }
+}
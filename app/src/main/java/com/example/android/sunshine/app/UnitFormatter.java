@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Small formatting engine for the numeric strings we show on every bind, widget row and
+ * notification (temperature, wind, pressure, humidity).
+ * <p>
+ * The format resources are parsed once into literal pieces and argument slots, and values are
+ * written digit by digit into a per-thread {@link StringBuilder}, so formatting costs one String
+ * per call instead of a trip through {@link String#format}.  Digits and the minus sign are taken
+ * from the platform formatter for the current locale, so the output is identical to
+ * String.format.  Patterns the engine does not understand are handed to String.format as is.
+ */
+public final class UnitFormatter {
+
+    // Largest magnitude we format ourselves; anything bigger goes through String.format.
+    private static final double MAX_FAST_VALUE = 1e15;
+
+    private static final String[] WIND_DIRECTIONS = {
+            "N", "NE", "E", "SE", "S", "SW", "W", "NW"
+    };
+
+    private static volatile UnitFormatter sCurrent;
+
+    private final Locale mLocale;
+    private final char[] mDigits = new char[10];
+    private final String mMinusSign;
+    private final ConcurrentHashMap<Integer, Template> mTemplates = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<Scratch> sScratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private UnitFormatter(Locale locale) {
+        mLocale = locale;
+        // Ask the platform formatter how it writes digits and negative numbers in this locale.
+        for (int i = 0; i < 10; i++) {
+            mDigits[i] = String.format(locale, "%.0f", (double) i).charAt(0);
+        }
+        String minusOne = String.format(locale, "%.0f", -1.0);
+        mMinusSign = minusOne.substring(0, minusOne.lastIndexOf(mDigits[1]));
+    }
+
+    private static UnitFormatter get() {
+        UnitFormatter formatter = sCurrent;
+        // Locale.getDefault() hands out the same instance until the configuration changes.
+        Locale locale = Locale.getDefault();
+        if (formatter == null || formatter.mLocale != locale) {
+            formatter = new UnitFormatter(locale);
+            sCurrent = formatter;
+        }
+        return formatter;
+    }
+
+    /**
+     * Formats a single numeric value with the given format resource, e.g. "%1.0f hPa".
+     *
+     * @param context Context used to read the format resource
+     * @param formatId format resource with a single %f argument
+     * @param value value to format
+     * @return the formatted string, identical to String.format
+     */
+    public static String format(Context context, int formatId, double value) {
+        UnitFormatter formatter = get();
+        Template template = formatter.getTemplate(context, formatId);
+        if (!template.supported || !isFast(value)) {
+            return String.format(template.pattern, value);
+        }
+        StringBuilder sb = sScratch.get().builder;
+        sb.setLength(0);
+        formatter.appendTemplate(sb, template, value, null);
+        return sb.toString();
+    }
+
+    /**
+     * Formats a numeric value and a string with the given format resource, e.g.
+     * "%1$1.0f km/h %2$s".
+     *
+     * @param context Context used to read the format resource
+     * @param formatId format resource with a %f and a %s argument
+     * @param value value for the %f argument
+     * @param text value for the %s argument
+     * @return the formatted string, identical to String.format
+     */
+    public static String format(Context context, int formatId, double value, String text) {
+        UnitFormatter formatter = get();
+        Template template = formatter.getTemplate(context, formatId);
+        if (!template.supported || !isFast(value)) {
+            return String.format(template.pattern, value, text);
+        }
+        StringBuilder sb = sScratch.get().builder;
+        sb.setLength(0);
+        formatter.appendTemplate(sb, template, value, text);
+        return sb.toString();
+    }
+
+    /**
+     * Converts a wind direction in meteorological degrees to a compass direction (e.g NW).
+     *
+     * @param degrees wind direction, 0 is north
+     * @return the compass direction, or "Unknown" if there is none
+     */
+    public static String getWindDirection(float degrees) {
+        if (Float.isNaN(degrees)) {
+            return "Unknown";
+        }
+        if (degrees >= 337.5 || degrees < 22.5) {
+            return WIND_DIRECTIONS[0];
+        }
+        return WIND_DIRECTIONS[(int) ((degrees - 22.5) / 45) + 1];
+    }
+
+    private static boolean isFast(double value) {
+        return !Double.isNaN(value) && Math.abs(value) < MAX_FAST_VALUE;
+    }
+
+    private Template getTemplate(Context context, int formatId) {
+        Template template = mTemplates.get(formatId);
+        if (template == null) {
+            template = Template.parse(context.getString(formatId));
+            mTemplates.put(formatId, template);
+        }
+        return template;
+    }
+
+    private void appendTemplate(StringBuilder sb, Template template, double value, String text) {
+        int count = template.argIndex.length;
+        for (int i = 0; i < count; i++) {
+            sb.append(template.literals[i]);
+            if (template.numeric[i]) {
+                appendNumber(sb, value, template.width[i]);
+            } else {
+                appendPadded(sb, String.valueOf(text), template.width[i]);
+            }
+        }
+        sb.append(template.literals[count]);
+    }
+
+    /**
+     * Appends the value rounded half-up to a whole number, like %.0f does.
+     */
+    private void appendNumber(StringBuilder sb, double value, int width) {
+        int start = sb.length();
+        // Double.compare puts -0.0 below 0.0, which is also how the platform formatter sees it.
+        if (Double.compare(value, 0.0) < 0) {
+            sb.append(mMinusSign);
+        }
+        double abs = Math.abs(value);
+        long whole = (long) abs;
+        if (abs - whole >= 0.5) {
+            whole++;
+        }
+
+        char[] scratch = sScratch.get().digits;
+        int length = 0;
+        do {
+            scratch[length++] = mDigits[(int) (whole % 10)];
+            whole /= 10;
+        } while (whole > 0);
+        while (length > 0) {
+            sb.append(scratch[--length]);
+        }
+        padStart(sb, start, width);
+    }
+
+    private static void appendPadded(StringBuilder sb, String text, int width) {
+        int start = sb.length();
+        sb.append(text);
+        padStart(sb, start, width);
+    }
+
+    private static void padStart(StringBuilder sb, int start, int width) {
+        while (sb.length() - start < width) {
+            sb.insert(start, ' ');
+        }
+    }
+
+    /**
+     * Per-thread buffers reused across calls.
+     */
+    private static class Scratch {
+        final StringBuilder builder = new StringBuilder(32);
+        final char[] digits = new char[20];
+    }
+
+    /**
+     * A format pattern split into literal text and argument slots.  Only %%, %s and %f with a
+     * precision of zero are understood; any other pattern is marked as unsupported.
+     */
+    private static class Template {
+        final String pattern;
+        final boolean supported;
+        // literals.length == argIndex.length + 1, literals surround the arguments
+        final String[] literals;
+        final int[] argIndex;
+        final boolean[] numeric;
+        final int[] width;
+
+        private Template(String pattern, boolean supported, String[] literals, int[] argIndex,
+                         boolean[] numeric, int[] width) {
+            this.pattern = pattern;
+            this.supported = supported;
+            this.literals = literals;
+            this.argIndex = argIndex;
+            this.numeric = numeric;
+            this.width = width;
+        }
+
+        static Template parse(String pattern) {
+            String[] literals = new String[3];
+            int[] argIndex = new int[2];
+            boolean[] numeric = new boolean[2];
+            int[] width = new int[2];
+            int count = 0;
+            int ordinaryIndex = 0;
+            boolean seenNumeric = false;
+            boolean seenText = false;
+
+            StringBuilder literal = new StringBuilder();
+            int i = 0;
+            int length = pattern.length();
+            while (i < length) {
+                char c = pattern.charAt(i++);
+                if (c != '%') {
+                    literal.append(c);
+                    continue;
+                }
+                if (i < length && pattern.charAt(i) == '%') {
+                    literal.append('%');
+                    i++;
+                    continue;
+                }
+
+                // %[index$][width][.precision]conversion
+                int number = -1;
+                int index = -1;
+                int fieldWidth = 0;
+                int precision = -1;
+                int digitsStart = i;
+                while (i < length && Character.isDigit(pattern.charAt(i))) i++;
+                if (i > digitsStart) {
+                    number = Integer.parseInt(pattern.substring(digitsStart, i));
+                }
+                if (i < length && pattern.charAt(i) == '$') {
+                    index = number - 1;
+                    i++;
+                    digitsStart = i;
+                    while (i < length && Character.isDigit(pattern.charAt(i))) i++;
+                    if (i > digitsStart) {
+                        fieldWidth = Integer.parseInt(pattern.substring(digitsStart, i));
+                    }
+                } else if (number >= 0) {
+                    if (pattern.charAt(digitsStart) == '0') {
+                        // zero padding flag, leave it to String.format
+                        return unsupported(pattern);
+                    }
+                    fieldWidth = number;
+                }
+                if (i < length && pattern.charAt(i) == '.') {
+                    i++;
+                    digitsStart = i;
+                    while (i < length && Character.isDigit(pattern.charAt(i))) i++;
+                    if (i == digitsStart) {
+                        return unsupported(pattern);
+                    }
+                    precision = Integer.parseInt(pattern.substring(digitsStart, i));
+                }
+                if (i >= length || count == argIndex.length) {
+                    return unsupported(pattern);
+                }
+                char conversion = pattern.charAt(i++);
+                if (index < 0) {
+                    index = ordinaryIndex++;
+                }
+                if (conversion == 'f' && precision == 0 && index == 0 && !seenNumeric) {
+                    numeric[count] = true;
+                    seenNumeric = true;
+                } else if (conversion == 's' && precision < 0 && index == 1 && !seenText) {
+                    numeric[count] = false;
+                    seenText = true;
+                } else {
+                    return unsupported(pattern);
+                }
+                literals[count] = literal.toString();
+                literal.setLength(0);
+                argIndex[count] = index;
+                width[count] = fieldWidth;
+                count++;
+            }
+            literals[count] = literal.toString();
+
+            String[] trimmedLiterals = new String[count + 1];
+            System.arraycopy(literals, 0, trimmedLiterals, 0, count + 1);
+            int[] trimmedIndex = new int[count];
+            System.arraycopy(argIndex, 0, trimmedIndex, 0, count);
+            boolean[] trimmedNumeric = new boolean[count];
+            System.arraycopy(numeric, 0, trimmedNumeric, 0, count);
+            int[] trimmedWidth = new int[count];
+            System.arraycopy(width, 0, trimmedWidth, 0, count);
+            return new Template(pattern, true, trimmedLiterals, trimmedIndex, trimmedNumeric,
+                    trimmedWidth);
+        }
+
+        private static Template unsupported(String pattern) {
+            return new Template(pattern, false, null, null, null, null);
+        }
+    }
+}
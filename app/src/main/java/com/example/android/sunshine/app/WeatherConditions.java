@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import com.example.android.sunshine.shared.ConditionTable;
+
+import java.util.Locale;
+
+/**
+ * Dense lookup table from an OpenWeatherMap condition id to everything we display for it: icon,
+ * art, art pack slug, Muzei image and description.  The table is built once; lookups are a
+ * bounds check plus an array read.  The slugs come from {@link ConditionTable}, which the watch
+ * face shares.
+ * <p>
+ * Based on weather code data found at:
+ * http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+ */
+public final class WeatherConditions {
+
+    public static final int MAX_CONDITION_ID = ConditionTable.MAX_CONDITION_ID;
+
+    // Art slugs, used both for the art pack URLs and to share image URLs between conditions.
+    public static final int SLUG_NONE = ConditionTable.SLUG_NONE;
+    public static final int SLUG_STORM = ConditionTable.SLUG_STORM;
+    public static final int SLUG_LIGHT_RAIN = ConditionTable.SLUG_LIGHT_RAIN;
+    public static final int SLUG_RAIN = ConditionTable.SLUG_RAIN;
+    public static final int SLUG_SNOW = ConditionTable.SLUG_SNOW;
+    public static final int SLUG_FOG = ConditionTable.SLUG_FOG;
+    public static final int SLUG_CLEAR = ConditionTable.SLUG_CLEAR;
+    public static final int SLUG_LIGHT_CLOUDS = ConditionTable.SLUG_LIGHT_CLOUDS;
+    public static final int SLUG_CLOUDS = ConditionTable.SLUG_CLOUDS;
+    // The tornado condition (781) shares the storm art but has its own Muzei image.
+    private static final int IMAGE_DUST = 8;
+
+    private static final String[] IMAGE_URLS = {
+            "http://upload.wikimedia.org/wikipedia/commons/2/28/Thunderstorm_in_Annemasse,_France.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/a/a0/Rain_on_leaf_504605006.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e6/Westminster_fog_-_London_-_UK.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/7/7e/A_few_trees_and_the_sun_(6009964513).jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e7/Cloudy_Blue_Sky_(5031259890).jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/5/54/Cloudy_hills_in_Elis,_Greece_2.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/d/dc/Raised_dust_ahead_of_a_severe_thunderstorm_1.jpg"
+    };
+
+    private static final int[] ICONS = {
+            R.drawable.ic_storm,
+            R.drawable.ic_light_rain,
+            R.drawable.ic_rain,
+            R.drawable.ic_snow,
+            R.drawable.ic_fog,
+            R.drawable.ic_clear,
+            R.drawable.ic_light_clouds,
+            R.drawable.ic_cloudy
+    };
+
+    private static final int[] ARTS = {
+            R.drawable.art_storm,
+            R.drawable.art_light_rain,
+            R.drawable.art_rain,
+            R.drawable.art_snow,
+            R.drawable.art_fog,
+            R.drawable.art_clear,
+            R.drawable.art_light_clouds,
+            R.drawable.art_clouds
+    };
+
+    // Per condition id: index into IMAGE_URLS and string resource id.
+    private static final byte[] sImages = new byte[MAX_CONDITION_ID + 1];
+    private static final int[] sStrings = new int[MAX_CONDITION_ID + 1];
+
+    static {
+        for (int i = 0; i <= MAX_CONDITION_ID; i++) {
+            sImages[i] = (byte) ConditionTable.getSlug(i);
+        }
+        sImages[781] = IMAGE_DUST;
+
+        fill(sStrings, R.string.condition_2xx, 200, 232);
+        fill(sStrings, R.string.condition_3xx, 300, 321);
+        sStrings[500] = R.string.condition_500;
+        sStrings[501] = R.string.condition_501;
+        sStrings[502] = R.string.condition_502;
+        sStrings[503] = R.string.condition_503;
+        sStrings[504] = R.string.condition_504;
+        sStrings[511] = R.string.condition_511;
+        sStrings[520] = R.string.condition_520;
+        sStrings[531] = R.string.condition_531;
+        sStrings[600] = R.string.condition_600;
+        sStrings[601] = R.string.condition_601;
+        sStrings[602] = R.string.condition_602;
+        sStrings[611] = R.string.condition_611;
+        sStrings[612] = R.string.condition_612;
+        sStrings[615] = R.string.condition_615;
+        sStrings[616] = R.string.condition_616;
+        sStrings[620] = R.string.condition_620;
+        sStrings[621] = R.string.condition_621;
+        sStrings[622] = R.string.condition_622;
+        sStrings[701] = R.string.condition_701;
+        sStrings[711] = R.string.condition_711;
+        sStrings[721] = R.string.condition_721;
+        sStrings[731] = R.string.condition_731;
+        sStrings[741] = R.string.condition_741;
+        sStrings[751] = R.string.condition_751;
+        sStrings[761] = R.string.condition_761;
+        sStrings[762] = R.string.condition_762;
+        sStrings[771] = R.string.condition_771;
+        sStrings[781] = R.string.condition_781;
+        sStrings[800] = R.string.condition_800;
+        sStrings[801] = R.string.condition_801;
+        sStrings[802] = R.string.condition_802;
+        sStrings[803] = R.string.condition_803;
+        sStrings[804] = R.string.condition_804;
+        sStrings[900] = R.string.condition_900;
+        sStrings[901] = R.string.condition_901;
+        sStrings[902] = R.string.condition_902;
+        sStrings[903] = R.string.condition_903;
+        sStrings[904] = R.string.condition_904;
+        sStrings[905] = R.string.condition_905;
+        sStrings[906] = R.string.condition_906;
+        sStrings[951] = R.string.condition_951;
+        sStrings[952] = R.string.condition_952;
+        sStrings[953] = R.string.condition_953;
+        sStrings[954] = R.string.condition_954;
+        sStrings[955] = R.string.condition_955;
+        sStrings[956] = R.string.condition_956;
+        sStrings[957] = R.string.condition_957;
+        sStrings[958] = R.string.condition_958;
+        sStrings[959] = R.string.condition_959;
+        sStrings[960] = R.string.condition_960;
+        sStrings[961] = R.string.condition_961;
+        sStrings[962] = R.string.condition_962;
+    }
+
+    private WeatherConditions() {
+    }
+
+    private static void fill(int[] table, int value, int from, int to) {
+        for (int i = from; i <= to; i++) {
+            table[i] = value;
+        }
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return the art slug index for the condition, or {@link #SLUG_NONE}
+     */
+    public static int getSlug(int weatherId) {
+        return ConditionTable.getSlug(weatherId);
+    }
+
+    /**
+     * @return the number of distinct art slugs
+     */
+    public static int getSlugCount() {
+        return ConditionTable.getSlugCount();
+    }
+
+    /**
+     * Formats every art slug with the given art pack URL format, indexed by slug.
+     *
+     * @param artPackFormat art pack URL containing a single %s for the slug
+     * @return art URLs indexed by slug
+     */
+    public static String[] formatArtUrls(String artPackFormat) {
+        String[] urls = new String[ConditionTable.getSlugCount()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = String.format(Locale.US, artPackFormat, ConditionTable.getSlugName(i));
+        }
+        return urls;
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return resource id for the corresponding icon. -1 if no relation is found.
+     */
+    public static int getIconResource(int weatherId) {
+        int slug = getSlug(weatherId);
+        return slug == SLUG_NONE ? -1 : ICONS[slug];
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return resource id for the corresponding art. -1 if no relation is found.
+     */
+    public static int getArtResource(int weatherId) {
+        int slug = getSlug(weatherId);
+        return slug == SLUG_NONE ? -1 : ARTS[slug];
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return A string URL to an appropriate image or null if no mapping is found
+     */
+    public static String getImageUrl(int weatherId) {
+        if (weatherId < 0 || weatherId > MAX_CONDITION_ID) {
+            return null;
+        }
+        int image = sImages[weatherId];
+        return image == SLUG_NONE ? null : IMAGE_URLS[image];
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return string resource id for the condition, or 0 if the condition is unknown
+     */
+    public static int getStringResource(int weatherId) {
+        if (weatherId < 0 || weatherId > MAX_CONDITION_ID) {
+            return 0;
+        }
+        return sStrings[weatherId];
+    }
+}
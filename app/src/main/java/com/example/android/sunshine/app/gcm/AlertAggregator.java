@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.gcm;
+
+import android.annotation.TargetApi;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.v4.app.NotificationCompat;
+
+import com.example.android.sunshine.app.BitmapCache;
+import com.example.android.sunshine.app.MainActivity;
+import com.example.android.sunshine.app.R;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns bursts of pushed weather alerts into a single notification.  Each alert is posted as soon
+ * as it arrives, while the GCM service still holds its wakelock, by replacing the notification
+ * in place: alerts arriving within {@link #MIN_INTERVAL_MILLIS} of the last one are added to it,
+ * repeats of the same weather for the same location are dropped, and only the first update of a
+ * burst makes a sound.
+ */
+final class AlertAggregator {
+
+    // Alerts closer together than this are grouped, and only the first of them alerts the user
+    static final long MIN_INTERVAL_MILLIS = 10 * 1000;
+    // Lines shown in the grouped notification, the count covers the rest
+    private static final int MAX_LINES = 5;
+
+    // Alerts in the notification, by weather and location.  Guarded by the class.
+    private static final Map<String, String> sShown = new LinkedHashMap<>();
+    private static long sLastPostTime = -MIN_INTERVAL_MILLIS;
+
+    private AlertAggregator() {
+    }
+
+    /**
+     * Posts an alert, adding it to the notification if the last one was posted recently.
+     * Must be called before the GCM service returns from onMessageReceived.
+     *
+     * @param context Context used to post the notification
+     * @param weather the severe weather
+     * @param location where it's happening
+     */
+    static void add(Context context, String weather, String location) {
+        String alert = context.getString(R.string.gcm_weather_alert, weather, location);
+        List<String> alerts;
+        boolean quiet;
+        synchronized (AlertAggregator.class) {
+            long now = SystemClock.elapsedRealtime();
+            quiet = now - sLastPostTime < MIN_INTERVAL_MILLIS;
+            if (!quiet) {
+                // The last burst is over, whatever it showed may well have been dismissed
+                sShown.clear();
+            }
+            if (sShown.put(weather + '\n' + location, alert) != null) {
+                // Nothing the user isn't already looking at
+                return;
+            }
+            sLastPostTime = now;
+            alerts = new ArrayList<>(sShown.values());
+        }
+        sendNotification(context, alerts, quiet);
+    }
+
+    /**
+     *  Put the alerts into a notification and post it, replacing the previous one.
+     *
+     * @param context Context used to build the notification
+     * @param alerts the alert messages to be posted
+     * @param quiet whether to update the notification without alerting the user again
+     */
+    private static void sendNotification(Context context, List<String> alerts, boolean quiet) {
+        NotificationManager notificationManager =
+                (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        PendingIntent contentIntent = PendingIntent.getActivity(context, 0,
+                new Intent(context, MainActivity.class), 0);
+
+        // Notifications using both a large and a small icon (which yours should!) need the large
+        // icon as a bitmap.  It's decoded once, at the size the notification shows it, and kept.
+        Bitmap largeIcon = getLargeIcon(context);
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context)
+                .setSmallIcon(R.drawable.art_clear)
+                .setLargeIcon(largeIcon)
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setOnlyAlertOnce(quiet)
+                .setContentIntent(contentIntent);
+
+        if (alerts.size() == 1) {
+            String message = alerts.get(0);
+            builder.setContentTitle(context.getString(R.string.gcm_weather_alert_title))
+                    .setStyle(new NotificationCompat.BigTextStyle().bigText(message))
+                    .setContentText(message);
+        } else {
+            String title = context.getResources().getQuantityString(
+                    R.plurals.gcm_weather_alerts, alerts.size(), alerts.size());
+            NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle()
+                    .setBigContentTitle(title);
+            for (int i = 0; i < alerts.size() && i < MAX_LINES; i++) {
+                style.addLine(alerts.get(i));
+            }
+            builder.setContentTitle(title)
+                    .setContentText(alerts.get(0))
+                    .setNumber(alerts.size())
+                    .setStyle(style);
+        }
+        notificationManager.notify(MyGcmListenerService.NOTIFICATION_ID, builder.build());
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static Bitmap getLargeIcon(Context context) {
+        int width = 0;
+        int height = 0;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            Resources resources = context.getResources();
+            width = resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width);
+            height = resources.getDimensionPixelSize(
+                    android.R.dimen.notification_large_icon_height);
+        }
+        return BitmapCache.getResource(context, R.drawable.art_storm, width, height);
+    }
+}
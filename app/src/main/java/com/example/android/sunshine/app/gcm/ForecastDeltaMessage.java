@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.gcm;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.os.RemoteException;
+import android.preference.PreferenceManager;
+import android.support.annotation.IntDef;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * A pushed change to the stored forecast: the changed fields of some days of one location, with
+ * a sequence number so a missed message can be noticed.  The payload is a JSON object in the
+ * {@link #EXTRA_DELTA} extra of the push message:
+ * <pre>
+ * {"seq": 42, "loc": "94043", "days": [{"date": 1419033600000, "max": 21.5, "wid": 500}]}
+ * </pre>
+ * Each day carries its date in milliseconds and any of the fields in {@link #FIELDS}.
+ * Messages are validated as a whole before anything is written.
+ */
+public final class ForecastDeltaMessage {
+
+    static final String EXTRA_DELTA = "delta";
+
+    private static final String KEY_SEQUENCE = "seq";
+    private static final String KEY_LOCATION = "loc";
+    private static final String KEY_DAYS = "days";
+    private static final String KEY_DATE = "date";
+
+    // Payload key and column of every field a delta can change
+    private static final String[][] FIELDS = {
+            {"wid", WeatherContract.WeatherEntry.COLUMN_WEATHER_ID},
+            {"desc", WeatherContract.WeatherEntry.COLUMN_SHORT_DESC},
+            {"max", WeatherContract.WeatherEntry.COLUMN_MAX_TEMP},
+            {"min", WeatherContract.WeatherEntry.COLUMN_MIN_TEMP},
+            {"hum", WeatherContract.WeatherEntry.COLUMN_HUMIDITY},
+            {"pres", WeatherContract.WeatherEntry.COLUMN_PRESSURE},
+            {"wind", WeatherContract.WeatherEntry.COLUMN_WIND_SPEED},
+            {"deg", WeatherContract.WeatherEntry.COLUMN_DEGREES},
+    };
+    private static final int FIELD_WEATHER_ID = 0;
+    private static final int FIELD_SHORT_DESC = 1;
+
+    private static final String PREF_LAST_SEQUENCE = "gcm_delta_last_sequence";
+    private static final long NO_SEQUENCE = -1;
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({RESULT_APPLIED, RESULT_STALE, RESULT_NEEDS_SYNC})
+    public @interface Result {}
+
+    /** The delta was written. */
+    public static final int RESULT_APPLIED = 0;
+    /** The delta was already seen, or is older than one that was, and was dropped. */
+    public static final int RESULT_STALE = 1;
+    /** A message was missed or the delta couldn't be written, only a full sync can catch up. */
+    public static final int RESULT_NEEDS_SYNC = 2;
+
+    final long sequence;
+    final String locationSetting;
+    final long[] dates;
+    final ContentValues[] changes;
+
+    private ForecastDeltaMessage(long sequence, String locationSetting, long[] dates,
+                                 ContentValues[] changes) {
+        this.sequence = sequence;
+        this.locationSetting = locationSetting;
+        this.dates = dates;
+        this.changes = changes;
+    }
+
+    /**
+     * @param json payload of the {@link #EXTRA_DELTA} extra
+     * @return the parsed message
+     * @throws JSONException if the payload is malformed or has unknown or mistyped fields
+     */
+    static ForecastDeltaMessage parse(String json) throws JSONException {
+        JSONObject message = new JSONObject(json);
+        long sequence = message.getLong(KEY_SEQUENCE);
+        String locationSetting = message.getString(KEY_LOCATION);
+        if (sequence < 0 || locationSetting.length() == 0) {
+            throw new JSONException("Bad sequence or location: " + json);
+        }
+
+        JSONArray days = message.getJSONArray(KEY_DAYS);
+        if (days.length() == 0) {
+            throw new JSONException("No days: " + json);
+        }
+        long[] dates = new long[days.length()];
+        ContentValues[] changes = new ContentValues[days.length()];
+        for (int i = 0; i < days.length(); i++) {
+            JSONObject day = days.getJSONObject(i);
+            long date = day.getLong(KEY_DATE);
+            if (date <= 0) {
+                throw new JSONException("Bad date: " + day);
+            }
+            dates[i] = WeatherContract.normalizeDate(date);
+            changes[i] = parseChanges(day);
+        }
+        return new ForecastDeltaMessage(sequence, locationSetting, dates, changes);
+    }
+
+    private static ContentValues parseChanges(JSONObject day) throws JSONException {
+        // Reject what we don't understand rather than half-apply it.
+        Iterator<String> keys = day.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!KEY_DATE.equals(key) && getField(key) == -1) {
+                throw new JSONException("Unknown field " + key + ": " + day);
+            }
+        }
+
+        ContentValues values = new ContentValues(FIELDS.length);
+        for (int field = 0; field < FIELDS.length; field++) {
+            String key = FIELDS[field][0];
+            if (!day.has(key)) {
+                continue;
+            }
+            String column = FIELDS[field][1];
+            if (field == FIELD_WEATHER_ID) {
+                values.put(column, day.getInt(key));
+            } else if (field == FIELD_SHORT_DESC) {
+                values.put(column, day.getString(key));
+            } else {
+                double value = day.getDouble(key);
+                if (Double.isNaN(value) || Double.isInfinite(value)) {
+                    throw new JSONException("Bad " + key + ": " + day);
+                }
+                values.put(column, value);
+            }
+        }
+        if (values.size() == 0) {
+            throw new JSONException("Nothing changed: " + day);
+        }
+        return values;
+    }
+
+    private static int getField(String key) {
+        for (int field = 0; field < FIELDS.length; field++) {
+            if (FIELDS[field][0].equals(key)) {
+                return field;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the delta to the provider if it's the next one expected, or the first one seen.
+     * Blocks on the provider, so it must not be called from the UI thread.
+     *
+     * @param context Context used to reach the provider and the preferences
+     * @return what became of the delta
+     */
+    @Result
+    int apply(Context context) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        long lastSequence = prefs.getLong(PREF_LAST_SEQUENCE, NO_SEQUENCE);
+        if (lastSequence != NO_SEQUENCE && sequence <= lastSequence) {
+            return RESULT_STALE;
+        }
+        // Whatever happens next, a later full sync covers every message up to this one.
+        prefs.edit().putLong(PREF_LAST_SEQUENCE, sequence).apply();
+        boolean gap = lastSequence != NO_SEQUENCE && sequence != lastSequence + 1;
+
+        long locationId = getLocationId(context);
+        if (locationId == -1) {
+            // We've never synced this location, so there's nothing to apply the delta to.
+            return RESULT_NEEDS_SYNC;
+        }
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(dates.length);
+        for (int i = 0; i < dates.length; i++) {
+            operations.add(ContentProviderOperation
+                    .newUpdate(WeatherContract.WeatherEntry.CONTENT_URI)
+                    .withSelection(WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND "
+                                    + WeatherContract.WeatherEntry.COLUMN_DATE + " = ?",
+                            new String[]{Long.toString(locationId), Long.toString(dates[i])})
+                    .withValues(changes[i])
+                    .build());
+        }
+        ContentProviderResult[] results;
+        try {
+            results = context.getContentResolver().applyBatch(
+                    WeatherContract.CONTENT_AUTHORITY, operations);
+        } catch (RemoteException | OperationApplicationException e) {
+            return RESULT_NEEDS_SYNC;
+        }
+        for (ContentProviderResult result : results) {
+            if (result.count == null || result.count == 0) {
+                // A day we don't have yet; a delta alone can't make a whole row.
+                gap = true;
+            }
+        }
+        return gap ? RESULT_NEEDS_SYNC : RESULT_APPLIED;
+    }
+
+    /**
+     * @return the first changed day
+     */
+    long getStartDate() {
+        long start = Long.MAX_VALUE;
+        for (long date : dates) {
+            start = Math.min(start, date);
+        }
+        return start;
+    }
+
+    /**
+     * @return the last changed day
+     */
+    long getEndDate() {
+        long end = Long.MIN_VALUE;
+        for (long date : dates) {
+            end = Math.max(end, date);
+        }
+        return end;
+    }
+
+    /**
+     * Forgets the last sequence number, so the next message is taken as it comes.  The sequence
+     * belongs to one location, so this must be called when the location changes.
+     *
+     * @param context Context used to reach the preferences
+     */
+    public static void resetSequence(Context context) {
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .remove(PREF_LAST_SEQUENCE).apply();
+    }
+
+    private long getLocationId(Context context) {
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                new String[]{WeatherContract.LocationEntry._ID},
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{locationSetting},
+                null);
+        if (cursor == null) {
+            return -1;
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -16,19 +16,14 @@
 
 package com.example.android.sunshine.app.gcm;
 
-import android.app.NotificationManager;
-import android.app.PendingIntent;
-import android.content.Context;
-import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
-import android.support.v4.app.NotificationCompat;
 import android.util.Log;
 import android.widget.Toast;
 
-import com.example.android.sunshine.app.MainActivity;
+import com.example.android.sunshine.app.ForecastSnapshot;
 import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.sync.DataUpdateDispatcher;
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
 import com.google.android.gms.gcm.GcmListenerService;
 
 import org.json.JSONException;
@@ -62,14 +57,17 @@ public class MyGcmListenerService extends GcmListenerService {
             }
             // Not a bad idea to check that the message is coming from your server.
             if ((senderId).equals(from)) {
+                if (data.containsKey(ForecastDeltaMessage.EXTRA_DELTA)) {
+                    applyDelta(data.getString(ForecastDeltaMessage.EXTRA_DELTA));
+                    return;
+                }
                 // Process message and then post a notification of the received message.
                 try {
                     JSONObject jsonObject = new JSONObject(data.getString(EXTRA_DATA));
                     String weather = jsonObject.getString(EXTRA_WEATHER);
                     String location = jsonObject.getString(EXTRA_LOCATION);
-                    String alert =
-                            String.format(getString(R.string.gcm_weather_alert), weather, location);
-                    sendNotification(alert);
+                    // Storms come in bursts, so alerts are batched into one notification
+                    AlertAggregator.add(this, weather, location);
                 } catch (JSONException e) {
                     // JSON parsing failed, so we just let this message go, since GCM is not one
                     // of our critical features.
@@ -80,31 +78,31 @@ public class MyGcmListenerService extends GcmListenerService {
     }
 
     /**
-     *  Put the message into a notification and post it.
-     *  This is just one simple example of what you might choose to do with a GCM message.
+     * Writes a pushed forecast delta straight to the provider, falling back to a full sync when
+     * a delta was missed or can't be applied.
      *
-     * @param message The alert message to be posted.
+     * @param payload the delta's JSON payload
      */
-    private void sendNotification(String message) {
-        NotificationManager mNotificationManager =
-                (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-        PendingIntent contentIntent =
-                PendingIntent.getActivity(this, 0, new Intent(this, MainActivity.class), 0);
-
-        // Notifications using both a large and a small icon (which yours should!) need the large
-        // icon as a bitmap. So we need to create that here from the resource ID, and pass the
-        // object along in our notification builder. Generally, you want to use the app icon as the
-        // small icon, so that users understand what app is triggering this notification.
-        Bitmap largeIcon = BitmapFactory.decodeResource(this.getResources(), R.drawable.art_storm);
-        NotificationCompat.Builder mBuilder =
-                new NotificationCompat.Builder(this)
-                        .setSmallIcon(R.drawable.art_clear)
-                        .setLargeIcon(largeIcon)
-                        .setContentTitle("Weather Alert!")
-                        .setStyle(new NotificationCompat.BigTextStyle().bigText(message))
-                        .setContentText(message)
-                        .setPriority(NotificationCompat.PRIORITY_HIGH);
-        mBuilder.setContentIntent(contentIntent);
-        mNotificationManager.notify(NOTIFICATION_ID, mBuilder.build());
+    private void applyDelta(String payload) {
+        ForecastDeltaMessage delta;
+        try {
+            delta = ForecastDeltaMessage.parse(payload);
+        } catch (JSONException e) {
+            Log.w(TAG, "Dropping malformed forecast delta", e);
+            return;
+        }
+        switch (delta.apply(this)) {
+            case ForecastDeltaMessage.RESULT_APPLIED:
+                ForecastSnapshot.refresh(this);
+                DataUpdateDispatcher.dispatch(this, delta.locationSetting,
+                        delta.getStartDate(), delta.getEndDate());
+                break;
+            case ForecastDeltaMessage.RESULT_NEEDS_SYNC:
+                Log.d(TAG, "Forecast delta " + delta.sequence + " needs a full sync");
+                SunshineSyncAdapter.syncImmediately(this);
+                break;
+            default:
+                Log.d(TAG, "Dropping stale forecast delta " + delta.sequence);
+        }
     }
-}
\ No newline at end of file
+}
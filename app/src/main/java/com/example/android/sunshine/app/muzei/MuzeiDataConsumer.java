@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.muzei;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.sync.DataUpdateDispatcher;
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+
+/**
+ * Asks {@link WeatherMuzeiSource} for new artwork when today's forecast for the preferred
+ * location changed.
+ */
+public final class MuzeiDataConsumer implements DataUpdateDispatcher.Consumer {
+
+    @Override
+    public void onDataUpdated(Context context, DataUpdateDispatcher.DataUpdate update) {
+        // Muzei is only compatible with Jelly Bean MR1+ devices, so there's no need to update the
+        // Muzei background on lower API level devices
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return;
+        }
+        // The artwork only follows today's conditions where the user is.
+        if (!update.covers(Utility.getPreferredLocation(context), System.currentTimeMillis())) {
+            return;
+        }
+        context.startService(new Intent(SunshineSyncAdapter.ACTION_DATA_UPDATED)
+                .setClass(context, WeatherMuzeiSource.class));
+    }
+}
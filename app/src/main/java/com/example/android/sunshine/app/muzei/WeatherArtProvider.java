@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.muzei;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Serves the screen-sized copies of the Muzei artwork kept in the app's files, so Muzei reads
+ * them locally instead of downloading the full-size originals.  Read-only, and only the files in
+ * the artwork directory can be opened.
+ */
+public class WeatherArtProvider extends ContentProvider {
+
+    // Must match android:authorities in the manifest
+    public static final String AUTHORITY = "com.example.android.sunshine.app.muzei";
+
+    private static final String ART_DIRECTORY = "muzei";
+    private static final String MIME_TYPE = "image/jpeg";
+
+    /**
+     * @param context Context used to reach the app's files
+     * @param name file name of the artwork
+     * @return where the artwork with that name is kept
+     */
+    static File getArtFile(Context context, String name) {
+        File directory = new File(context.getFilesDir(), ART_DIRECTORY);
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        return new File(directory, name);
+    }
+
+    /**
+     * @param file artwork file from {@link #getArtFile(Context, String)}
+     * @return the content uri Muzei can read the artwork from
+     */
+    static Uri buildArtUri(File file) {
+        return new Uri.Builder()
+                .scheme("content")
+                .authority(AUTHORITY)
+                .appendPath(file.getName())
+                .build();
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return MIME_TYPE;
+    }
+
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode)
+            throws FileNotFoundException {
+        if (!"r".equals(mode)) {
+            throw new SecurityException("Artwork is read-only: " + uri);
+        }
+        // Path segments are decoded, so an encoded '/' could still climb out of the directory.
+        String name = uri.getLastPathSegment();
+        if (uri.getPathSegments().size() != 1 || name == null || name.startsWith(".")
+                || name.indexOf('/') != -1) {
+            throw new FileNotFoundException("Unknown uri: " + uri);
+        }
+        File file = getArtFile(getContext(), name);
+        try {
+            // Whatever the name, the file it resolves to must be directly in the artwork directory.
+            String directory = file.getParentFile().getCanonicalPath();
+            if (!directory.equals(file.getCanonicalFile().getParent())) {
+                throw new FileNotFoundException("Unknown uri: " + uri);
+            }
+        } catch (IOException e) {
+            throw new FileNotFoundException("Unknown uri: " + uri);
+        }
+        if (!file.isFile()) {
+            throw new FileNotFoundException("Unknown uri: " + uri);
+        }
+        return ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection,
+                        String[] selectionArgs, String sortOrder) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException("Unknown uri: " + uri);
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Unknown uri: " + uri);
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection,
+                      String[] selectionArgs) {
+        throw new UnsupportedOperationException("Unknown uri: " + uri);
+    }
+}
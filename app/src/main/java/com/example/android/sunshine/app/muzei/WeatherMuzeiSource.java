@@ -17,8 +17,16 @@ package com.example.android.sunshine.app.muzei;
 
 import android.content.Intent;
 import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.net.Uri;
+import android.support.v4.util.AtomicFile;
+import android.util.DisplayMetrics;
+import android.util.Log;
 
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.FutureTarget;
+import com.bumptech.glide.request.target.Target;
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
@@ -26,10 +34,23 @@ import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
 import com.google.android.apps.muzei.api.Artwork;
 import com.google.android.apps.muzei.api.MuzeiArtSource;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 /**
  * Muzei source that changes your background based on the current weather conditions
+ * <p>
+ * Artwork is only republished when today's condition or the location changes, and it's served
+ * through {@link WeatherArtProvider} from a copy scaled down to the screen, which is downloaded
+ * once per image.
  */
 public class WeatherMuzeiSource extends MuzeiArtSource {
+    private static final String LOG_TAG = WeatherMuzeiSource.class.getSimpleName();
+
     private static final String[] FORECAST_COLUMNS = new String[]{
             WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
             WeatherContract.WeatherEntry.COLUMN_SHORT_DESC
@@ -38,6 +59,9 @@ public class WeatherMuzeiSource extends MuzeiArtSource {
     private static final int INDEX_WEATHER_ID = 0;
     private static final int INDEX_SHORT_DESC = 1;
 
+    private static final long DOWNLOAD_TIMEOUT_SECONDS = 30;
+    private static final int JPEG_QUALITY = 90;
+
     public WeatherMuzeiSource() {
         super("WeatherMuzeiSource");
     }
@@ -54,26 +78,135 @@ public class WeatherMuzeiSource extends MuzeiArtSource {
 
     @Override
     protected void onUpdate(int reason) {
+        // Only today's row is needed, not the whole forecast
         String location = Utility.getPreferredLocation(this);
-        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+        Uri weatherForTodayUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
                 location, System.currentTimeMillis());
-        Cursor cursor = getContentResolver().query(weatherForLocationUri, FORECAST_COLUMNS, null,
-                null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
-        if (cursor.moveToFirst()) {
-            int weatherId = cursor.getInt(INDEX_WEATHER_ID);
-            String desc = cursor.getString(INDEX_SHORT_DESC);
-
-            String imageUrl = Utility.getImageUrlForWeatherCondition(weatherId);
-            // Only publish a new wallpaper if we have a valid image
-            if (imageUrl != null) {
-                publishArtwork(new Artwork.Builder()
-                        .imageUri(Uri.parse(imageUrl))
-                        .title(desc)
-                        .byline(location)
-                        .viewIntent(new Intent(this, MainActivity.class))
-                        .build());
+        Cursor cursor = getContentResolver().query(weatherForTodayUri, FORECAST_COLUMNS, null,
+                null, null);
+        if (cursor == null) {
+            return;
+        }
+        int weatherId;
+        String desc;
+        try {
+            if (!cursor.moveToFirst()) {
+                return;
             }
+            weatherId = cursor.getInt(INDEX_WEATHER_ID);
+            desc = cursor.getString(INDEX_SHORT_DESC);
+        } finally {
+            cursor.close();
+        }
+
+        String imageUrl = Utility.getImageUrlForWeatherCondition(weatherId);
+        // Only publish a new wallpaper if we have a valid image
+        if (imageUrl == null) {
+            return;
+        }
+
+        // Muzei keeps the current artwork, token included, so this holds across restarts too.
+        // Artwork published with the remote image, when the local copy couldn't be made, is
+        // replaced as soon as the copy can be made.
+        String token = weatherId + "@" + location;
+        Artwork current = getCurrentArtwork();
+        if (current != null && token.equals(current.getToken()) && isLocal(current)) {
+            return;
+        }
+
+        Uri imageUri = getScaledArt(imageUrl);
+        publishArtwork(new Artwork.Builder()
+                .imageUri(imageUri != null ? imageUri : Uri.parse(imageUrl))
+                .title(desc)
+                .byline(location)
+                .token(token)
+                .viewIntent(new Intent(this, MainActivity.class))
+                .build());
+    }
+
+    private static boolean isLocal(Artwork artwork) {
+        Uri imageUri = artwork.getImageUri();
+        return imageUri != null
+                && WeatherArtProvider.AUTHORITY.equals(imageUri.getAuthority());
+    }
+
+    /*
+        Returns a content uri for a copy of the image that covers the screen in either orientation
+        but is no larger, downloading and scaling it first if there's no such copy yet.
+     */
+    private Uri getScaledArt(String imageUrl) {
+        DisplayMetrics displayMetrics = getResources().getDisplayMetrics();
+        int maxSide = Math.max(displayMetrics.widthPixels, displayMetrics.heightPixels);
+        File file = WeatherArtProvider.getArtFile(this,
+                Integer.toHexString(imageUrl.hashCode()) + "_" + maxSide + ".jpg");
+        if (file.isFile()) {
+            return WeatherArtProvider.buildArtUri(file);
+        }
+
+        FutureTarget<File> target = Glide.with(this)
+                .load(imageUrl)
+                .downloadOnly(Target.SIZE_ORIGINAL, Target.SIZE_ORIGINAL);
+        try {
+            File original = target.get(DOWNLOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            Bitmap bitmap = decodeScaled(original, maxSide);
+            if (bitmap == null) {
+                return null;
+            }
+            AtomicFile atomicFile = new AtomicFile(file);
+            FileOutputStream out = atomicFile.startWrite();
+            try {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+                atomicFile.finishWrite(out);
+            } catch (RuntimeException e) {
+                atomicFile.failWrite(out);
+                throw e;
+            } finally {
+                bitmap.recycle();
+            }
+            return WeatherArtProvider.buildArtUri(file);
+        } catch (InterruptedException | ExecutionException | TimeoutException | IOException e) {
+            Log.w(LOG_TAG, "Couldn't cache artwork from " + imageUrl, e);
+            return null;
+        } finally {
+            Glide.clear(target);
+        }
+    }
+
+    /*
+        Decodes the image so its shorter side is minSide, or its own size if that's smaller.
+     */
+    private static Bitmap decodeScaled(File file, int minSide) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        int shortSide = Math.min(options.outWidth, options.outHeight);
+        if (shortSide <= 0) {
+            return null;
+        }
+
+        // Subsample while decoding as far as we can without going below the requested size...
+        int sampleSize = 1;
+        while (shortSide / (sampleSize * 2) >= minSide) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap decoded = BitmapFactory.decodeFile(file.getPath(), options);
+        if (decoded == null) {
+            return null;
+        }
+
+        // ...then scale the rest of the way.
+        float scale = (float) minSide / Math.min(decoded.getWidth(), decoded.getHeight());
+        if (scale >= 1f) {
+            return decoded;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded,
+                Math.max(1, Math.round(decoded.getWidth() * scale)),
+                Math.max(1, Math.round(decoded.getHeight() * scale)), true);
+        if (scaled != decoded) {
+            decoded.recycle();
         }
-        cursor.close();
+        return scaled;
     }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.support.v4.net.ConnectivityManagerCompat;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.FutureTarget;
+import com.bumptech.glide.request.target.Target;
+import com.example.android.sunshine.app.PreferenceSnapshot;
+import com.example.android.sunshine.app.WeatherConditions;
+
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Warms Glide's disk cache with the art pack images a freshly synced forecast needs, so the
+ * forecast list, the detail view, the widgets and the notification decode them from disk instead
+ * of stalling on the network.
+ * <p>
+ * The original images are cached; every consumer loads with
+ * {@link com.bumptech.glide.load.engine.DiskCacheStrategy#ALL} and so decodes its own size from
+ * the cached original.  Nothing is fetched on metered networks or when the battery is low.
+ */
+final class ArtPrefetcher {
+
+    private static final String LOG_TAG = ArtPrefetcher.class.getSimpleName();
+
+    // Don't hold up the sync on a single slow image for longer than this.
+    private static final long TIMEOUT_SECONDS = 15;
+    // Below this battery level, and not charging, the art can wait until it's displayed.
+    private static final float MIN_BATTERY_LEVEL = 0.15f;
+
+    private ArtPrefetcher() {
+    }
+
+    /**
+     * Downloads the art for the given conditions, once per distinct image, if the current art
+     * pack isn't the built-in one and the device policy allows it.  Blocks, so it must not be
+     * called from the UI thread.
+     *
+     * @param context Context used to reach Glide and the system services
+     * @param weatherIds condition ids from the OpenWeatherMap API response
+     * @return the number of images fetched
+     */
+    static int prefetch(Context context, int[] weatherIds) {
+        PreferenceSnapshot prefs = PreferenceSnapshot.get(context);
+        if (prefs.localGraphics || !isAllowed(context)) {
+            return 0;
+        }
+
+        boolean[] seen = new boolean[WeatherConditions.getSlugCount()];
+        int fetched = 0;
+        for (int weatherId : weatherIds) {
+            int slug = WeatherConditions.getSlug(weatherId);
+            if (slug == WeatherConditions.SLUG_NONE || seen[slug]) {
+                continue;
+            }
+            seen[slug] = true;
+
+            String url = prefs.getArtUrl(slug);
+            FutureTarget<File> target = Glide.with(context)
+                    .load(url)
+                    .downloadOnly(Target.SIZE_ORIGINAL, Target.SIZE_ORIGINAL);
+            try {
+                target.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                fetched++;
+            } catch (InterruptedException | ExecutionException | TimeoutException e) {
+                Log.w(LOG_TAG, "Couldn't prefetch art from " + url, e);
+            } finally {
+                Glide.clear(target);
+            }
+        }
+        Log.d(LOG_TAG, "Prefetched " + fetched + " art images");
+        return fetched;
+    }
+
+    /*
+        Unmetered connection, and either charging or enough battery left, and not saving power.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    static boolean isAllowed(Context context) {
+        ConnectivityManager cm =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
+        if (activeNetwork == null || !activeNetwork.isConnected()
+                || ConnectivityManagerCompat.isActiveNetworkMetered(cm)) {
+            return false;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            PowerManager pm = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+            if (pm.isPowerSaveMode()) {
+                return false;
+            }
+        }
+
+        // ACTION_BATTERY_CHANGED is sticky, so this returns the last battery state right away.
+        Intent battery = context.getApplicationContext().registerReceiver(null,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) {
+            return true;
+        }
+        int status = battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        if (status == BatteryManager.BATTERY_STATUS_CHARGING
+                || status == BatteryManager.BATTERY_STATUS_FULL) {
+            return true;
+        }
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        return level < 0 || scale <= 0 || (float) level / scale >= MIN_BATTERY_LEVEL;
+    }
+}
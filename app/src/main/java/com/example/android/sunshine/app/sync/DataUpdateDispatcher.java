@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.muzei.MuzeiDataConsumer;
+import com.example.android.sunshine.app.widget.WidgetDataConsumer;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tells the rest of the app which forecasts changed, without a broadcast round trip through the
+ * system.  Updates are handed to every registered {@link Consumer} on the thread that dispatched
+ * them, before the sync or push that produced them finishes, so the process is kept alive until
+ * they're delivered.
+ * <p>
+ * There is no shared delivery thread and no delay to gather bursts: updates are only merged when
+ * one is dispatched while another is being delivered, in which case it's delivered by that same
+ * thread right after, together with any others that arrived meanwhile.  There is no broadcast
+ * fallback either, every consumer lives in this process.
+ * <p>
+ * The widgets and Muzei are registered by default.
+ */
+public final class DataUpdateDispatcher {
+
+    private static final String LOG_TAG = DataUpdateDispatcher.class.getSimpleName();
+
+    /**
+     * Receives data updates on the dispatching background thread.
+     */
+    public interface Consumer {
+        /**
+         * Called on the dispatching background thread, so it may query the provider directly.
+         * Consumers run one after the other and should skip updates they don't display.
+         *
+         * @param context the application Context
+         * @param update what changed
+         */
+        void onDataUpdated(Context context, DataUpdate update);
+    }
+
+    /**
+     * The locations and the range of days whose forecasts changed.
+     */
+    public static final class DataUpdate {
+        private final Set<String> mLocations;
+        /** First changed day, normalized like {@link WeatherContract#normalizeDate(long)}. */
+        public final long startDate;
+        /** Last changed day, normalized like {@link WeatherContract#normalizeDate(long)}. */
+        public final long endDate;
+
+        DataUpdate(Set<String> locations, long startDate, long endDate) {
+            mLocations = Collections.unmodifiableSet(locations);
+            this.startDate = startDate;
+            this.endDate = endDate;
+        }
+
+        /**
+         * @return the location settings whose forecasts changed
+         */
+        public Set<String> getLocations() {
+            return mLocations;
+        }
+
+        /**
+         * @param locationSetting a location setting
+         * @return true if any forecast for that location changed
+         */
+        public boolean hasLocation(String locationSetting) {
+            return mLocations.contains(locationSetting);
+        }
+
+        /**
+         * @param locationSetting a location setting
+         * @param date a date in milliseconds, normalized or not
+         * @return true if the forecast for that location and day may have changed
+         */
+        public boolean covers(String locationSetting, long date) {
+            long day = WeatherContract.normalizeDate(date);
+            return hasLocation(locationSetting) && day >= startDate && day <= endDate;
+        }
+
+        DataUpdate merge(DataUpdate other) {
+            Set<String> locations = new HashSet<>(mLocations);
+            locations.addAll(other.mLocations);
+            return new DataUpdate(locations, Math.min(startDate, other.startDate),
+                    Math.max(endDate, other.endDate));
+        }
+
+        @Override
+        public String toString() {
+            return mLocations + " " + startDate + ".." + endDate;
+        }
+    }
+
+    private static final List<Consumer> sConsumers = new CopyOnWriteArrayList<>();
+    // Updates dispatched while another was being delivered, guarded by the class.
+    private static DataUpdate sPending;
+    private static boolean sDelivering;
+
+    static {
+        register(new WidgetDataConsumer());
+        register(new MuzeiDataConsumer());
+    }
+
+    private DataUpdateDispatcher() {
+    }
+
+    /**
+     * @param consumer consumer to hand every future update to
+     */
+    public static void register(Consumer consumer) {
+        if (!sConsumers.contains(consumer)) {
+            sConsumers.add(consumer);
+        }
+    }
+
+    /**
+     * @param consumer consumer that no longer wants updates
+     */
+    public static void unregister(Consumer consumer) {
+        sConsumers.remove(consumer);
+    }
+
+    /**
+     * Delivers an update for the given location and days.  If another thread is delivering an
+     * update, this one is merged with anything else waiting and delivered by that thread once
+     * it's done.
+     *
+     * @param context Context used to deliver the update
+     * @param locationSetting location whose forecast changed
+     * @param startDate first changed day, in milliseconds
+     * @param endDate last changed day, in milliseconds
+     */
+    public static void dispatch(Context context, String locationSetting, long startDate,
+                                long endDate) {
+        Set<String> locations = new HashSet<>();
+        locations.add(locationSetting);
+        DataUpdate update = new DataUpdate(locations, WeatherContract.normalizeDate(startDate),
+                WeatherContract.normalizeDate(endDate));
+
+        synchronized (DataUpdateDispatcher.class) {
+            sPending = sPending == null ? update : sPending.merge(update);
+            if (sDelivering) {
+                // It'll go out as soon as the update in flight has been delivered.
+                return;
+            }
+            sDelivering = true;
+        }
+        Context appContext = context.getApplicationContext();
+        while (true) {
+            synchronized (DataUpdateDispatcher.class) {
+                update = sPending;
+                sPending = null;
+                if (update == null) {
+                    sDelivering = false;
+                    return;
+                }
+            }
+            deliver(appContext, update);
+        }
+    }
+
+    private static void deliver(Context context, DataUpdate update) {
+        for (Consumer consumer : sConsumers) {
+            try {
+                consumer.onDataUpdated(context, update);
+            } catch (RuntimeException e) {
+                // One broken consumer mustn't keep the others from hearing about the update.
+                Log.e(LOG_TAG, "Couldn't deliver " + update + " to " + consumer, e);
+            }
+        }
+    }
+}
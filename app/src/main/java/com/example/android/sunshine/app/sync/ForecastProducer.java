@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+
+/**
+ * Something published from today's forecast after a sync, like the notification or the Wear
+ * data item.  Producers are asked whether they're due before today's forecast is even read, and
+ * build only what they emit.
+ */
+interface ForecastProducer {
+
+    /**
+     * Must be cheap: no provider queries, no bitmaps.
+     *
+     * @param context Context used to read preferences
+     * @return true if {@link #produce(Context, TodayForecast)} would emit anything now
+     */
+    boolean isDue(Context context);
+
+    /**
+     * Builds and emits the producer's output.  Called on the sync thread, so it may block.
+     *
+     * @param context Context used to build the output
+     * @param forecast today's forecast for the preferred location
+     */
+    void produce(Context context, TodayForecast forecast);
+}
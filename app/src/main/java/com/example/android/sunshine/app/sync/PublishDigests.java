@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.support.annotation.IntDef;
+import android.util.Base64;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Remembers a digest of the last payload published to each Wear data path, and of the part
+ * of it the watch face actually displays, so unchanged payloads aren't sent again and only
+ * visible changes are sent urgently.  Digests are kept in preferences so they survive the sync
+ * process being killed.
+ */
+final class PublishDigests {
+
+    // Preference key prefixes, followed by the data path
+    static final String PREF_PAYLOAD_DIGEST = "wear_payload_digest:";
+    static final String PREF_DISPLAYED_DIGEST = "wear_displayed_digest:";
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({CHANGE_NONE, CHANGE_HIDDEN, CHANGE_DISPLAYED})
+    @interface Change {}
+
+    /** Same payload as last published, nothing to send. */
+    static final int CHANGE_NONE = 0;
+    /** The payload changed but the watch would display the same thing, send it lazily. */
+    static final int CHANGE_HIDDEN = 1;
+    /** The watch would display something new, send it urgently. */
+    static final int CHANGE_DISPLAYED = 2;
+
+    private PublishDigests() {
+    }
+
+    /**
+     * @param context Context used to read the digests
+     * @param path data path the payload is published to
+     * @param payload the full payload
+     * @param displayed the part of the payload the watch displays
+     * @return how the payload differs from the last one published to path
+     */
+    @Change
+    static int compare(Context context, String path, byte[] payload, byte[] displayed) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        if (digest(payload).equals(prefs.getString(PREF_PAYLOAD_DIGEST + path, null))) {
+            return CHANGE_NONE;
+        }
+        if (digest(displayed).equals(prefs.getString(PREF_DISPLAYED_DIGEST + path, null))) {
+            return CHANGE_HIDDEN;
+        }
+        return CHANGE_DISPLAYED;
+    }
+
+    /**
+     * Records a payload as published, call once the data layer has accepted it.
+     */
+    static void record(Context context, String path, byte[] payload, byte[] displayed) {
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putString(PREF_PAYLOAD_DIGEST + path, digest(payload))
+                .putString(PREF_DISPLAYED_DIGEST + path, digest(displayed))
+                .apply();
+    }
+
+    private static String digest(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(data);
+            return Base64.encodeToString(digest, Base64.NO_WRAP);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Android device has SHA-1
+            throw new AssertionError(e);
+        }
+    }
+}
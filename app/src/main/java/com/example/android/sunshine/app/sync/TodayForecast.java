@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+/**
+ * Today's forecast for the preferred location, as handed to the {@link ForecastProducer}s.
+ */
+final class TodayForecast {
+
+    private static final String[] NOTIFY_WEATHER_PROJECTION = new String[] {
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC
+    };
+
+    // these indices must match the projection
+    private static final int INDEX_WEATHER_ID = 0;
+    private static final int INDEX_MAX_TEMP = 1;
+    private static final int INDEX_MIN_TEMP = 2;
+    private static final int INDEX_SHORT_DESC = 3;
+
+    final int weatherId;
+    final double high;
+    final double low;
+    final String desc;
+
+    TodayForecast(int weatherId, double high, double low, String desc) {
+        this.weatherId = weatherId;
+        this.high = high;
+        this.low = low;
+        this.desc = desc;
+    }
+
+    /**
+     * Runs every producer that's due, reading today's forecast only if at least one is.
+     *
+     * @param context Context used to query the provider
+     * @param producers producers to run, in order
+     * @return the number of producers that ran
+     */
+    static int produce(Context context, ForecastProducer... producers) {
+        TodayForecast forecast = null;
+        int produced = 0;
+        for (ForecastProducer producer : producers) {
+            if (!producer.isDue(context)) {
+                continue;
+            }
+            if (forecast == null) {
+                forecast = query(context);
+                if (forecast == null) {
+                    return produced;
+                }
+            }
+            producer.produce(context, forecast);
+            produced++;
+        }
+        return produced;
+    }
+
+    /**
+     * @param context Context used to query the provider
+     * @return today's forecast for the preferred location, or null if there's none
+     */
+    static TodayForecast query(Context context) {
+        String locationQuery = Utility.getPreferredLocation(context);
+        Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
+                locationQuery, System.currentTimeMillis());
+        Cursor cursor = context.getContentResolver().query(
+                weatherUri, NOTIFY_WEATHER_PROJECTION, null, null, null);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            return new TodayForecast(cursor.getInt(INDEX_WEATHER_ID),
+                    cursor.getDouble(INDEX_MAX_TEMP), cursor.getDouble(INDEX_MIN_TEMP),
+                    cursor.getString(INDEX_SHORT_DESC));
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.PutDataMapRequest;
+import com.google.android.gms.wearable.PutDataRequest;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes payloads to the Wear data layer on its own thread, so callers never wait on the
+ * watch.  Only the latest payload for each data path is kept, and at most {@link #MAX_PENDING}
+ * paths wait at once; the oldest is dropped past that.  The connection to Play Services is kept
+ * warm between publishes and released once the queue has been idle for a while.
+ * <p>
+ * A payload is compared with the last one published to its path just before it's sent, see
+ * {@link PublishDigests}, so a superseded payload is never compared nor sent.
+ */
+final class WearPublishQueue {
+
+    private static final String LOG_TAG = WearPublishQueue.class.getSimpleName();
+
+    static final int MAX_PENDING = 4;
+
+    private static final long CONNECT_TIMEOUT_SECONDS = 10;
+    private static final long PUBLISH_TIMEOUT_SECONDS = 15;
+    // Long enough to span the sync and the pushes that tend to follow it
+    private static final long IDLE_RELEASE_SECONDS = 60;
+
+    /**
+     * Delivers payloads to the watch, called on the queue's thread only.
+     */
+    interface Sender {
+        /**
+         * Blocks until the payload is accepted or gives up.
+         *
+         * @param path data path to publish to
+         * @param key key of the payload in the path's DataMap
+         * @param payload the payload
+         * @param urgent whether the watch should be woken up for it
+         * @return true if the data layer accepted the payload
+         */
+        boolean send(String path, String key, byte[] payload, boolean urgent);
+
+        /**
+         * Drops any connection, the next {@link #send} must reopen it.
+         */
+        void release();
+    }
+
+    private static final class Job {
+        final String path;
+        final String key;
+        final byte[] payload;
+        final byte[] displayed;
+        final long enqueuedAt;
+
+        Job(String path, String key, byte[] payload, byte[] displayed) {
+            this.path = path;
+            this.key = key;
+            this.payload = payload;
+            this.displayed = displayed;
+            this.enqueuedAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    private static WearPublishQueue sInstance;
+
+    private final Context mContext;
+    private final Sender mSender;
+    private final ScheduledExecutorService mExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+    // Pending jobs by path, oldest first, guarded by this.
+    private final Map<String, Job> mPending = new LinkedHashMap<>();
+    private boolean mDraining;
+    // Only touched on the queue's thread.
+    private ScheduledFuture<?> mRelease;
+
+    /**
+     * @return the queue shared by the whole process, publishing through Play Services
+     */
+    static synchronized WearPublishQueue getInstance(Context context) {
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            sInstance = new WearPublishQueue(appContext, new DataApiSender(appContext));
+        }
+        return sInstance;
+    }
+
+    WearPublishQueue(Context context, Sender sender) {
+        mContext = context.getApplicationContext();
+        mSender = sender;
+    }
+
+    /**
+     * Queues a payload and returns straight away.  A payload still waiting for the same path is
+     * replaced.
+     *
+     * @param path data path to publish to
+     * @param key key of the payload in the path's DataMap
+     * @param payload the payload
+     * @param displayed the part of the payload the watch displays, see {@link PublishDigests}
+     */
+    void publish(String path, String key, byte[] payload, byte[] displayed) {
+        Job job = new Job(path, key, payload, displayed);
+        synchronized (this) {
+            if (mPending.remove(path) != null) {
+                Log.d(LOG_TAG, "Superseded pending publish to " + path);
+            } else if (mPending.size() >= MAX_PENDING) {
+                Iterator<Job> oldest = mPending.values().iterator();
+                Log.w(LOG_TAG, "Queue full, dropped publish to " + oldest.next().path);
+                oldest.remove();
+            }
+            mPending.put(path, job);
+            if (mDraining) {
+                return;
+            }
+            mDraining = true;
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        });
+    }
+
+    private void drain() {
+        if (mRelease != null) {
+            mRelease.cancel(false);
+            mRelease = null;
+        }
+        while (true) {
+            Job job;
+            synchronized (this) {
+                Iterator<Job> oldest = mPending.values().iterator();
+                if (!oldest.hasNext()) {
+                    mDraining = false;
+                    break;
+                }
+                job = oldest.next();
+                oldest.remove();
+            }
+            send(job);
+        }
+        mRelease = mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                mSender.release();
+            }
+        }, IDLE_RELEASE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void send(Job job) {
+        int change = PublishDigests.compare(mContext, job.path, job.payload, job.displayed);
+        if (change == PublishDigests.CHANGE_NONE) {
+            Log.d(LOG_TAG, "Unchanged, not publishing to " + job.path);
+            return;
+        }
+        // Only wake the watch for something it will show, the rest can wait for its next sync
+        boolean urgent = change == PublishDigests.CHANGE_DISPLAYED;
+        boolean sent;
+        try {
+            sent = mSender.send(job.path, job.key, job.payload, urgent);
+        } catch (RuntimeException e) {
+            Log.e(LOG_TAG, "Couldn't publish to " + job.path, e);
+            sent = false;
+        }
+        long latency = SystemClock.elapsedRealtime() - job.enqueuedAt;
+        if (sent) {
+            PublishDigests.record(mContext, job.path, job.payload, job.displayed);
+            Log.i(LOG_TAG, "Published " + job.payload.length + " bytes to " + job.path
+                    + (urgent ? " urgently" : "") + " in " + latency + "ms");
+        } else {
+            // Nothing's recorded, so the next sync tries again
+            Log.w(LOG_TAG, "Failed to publish to " + job.path + " after " + latency + "ms");
+        }
+    }
+
+    /**
+     * Publishes through the Wearable DataApi, keeping the client connected between sends.
+     */
+    private static final class DataApiSender implements Sender {
+        private final GoogleApiClient mGoogleClient;
+
+        DataApiSender(Context context) {
+            mGoogleClient = new GoogleApiClient.Builder(context)
+                    .addApi(Wearable.API)
+                    .build();
+        }
+
+        @Override
+        public boolean send(String path, String key, byte[] payload, boolean urgent) {
+            if (!mGoogleClient.isConnected()) {
+                ConnectionResult connection =
+                        mGoogleClient.blockingConnect(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                if (!connection.isSuccess()) {
+                    Log.w(LOG_TAG, "Couldn't connect to the Wearable API: " + connection);
+                    return false;
+                }
+            }
+            PutDataMapRequest putDataMapReq = PutDataMapRequest.create(path);
+            putDataMapReq.getDataMap().putByteArray(key, payload);
+            PutDataRequest putDataReq = putDataMapReq.asPutDataRequest();
+            if (urgent) {
+                putDataReq.setUrgent();
+            }
+            DataApi.DataItemResult result = Wearable.DataApi.putDataItem(mGoogleClient, putDataReq)
+                    .await(PUBLISH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (!result.getStatus().isSuccess()) {
+                Log.w(LOG_TAG, "Data item failed to set: " + result.getStatus());
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void release() {
+            if (mGoogleClient.isConnected() || mGoogleClient.isConnecting()) {
+                mGoogleClient.disconnect();
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.shared.ForecastCodec;
+import com.example.android.sunshine.shared.ForecastDay;
+import com.example.android.sunshine.shared.WearContract;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends the forecast from today on to the watch face through the Wear data layer after every
+ * sync, whether or not the phone notification is due.  It reads the days it sends itself, so it
+ * isn't a {@link ForecastProducer}: those share today's row, which the watch has no use for.
+ * The days are encoded with {@link ForecastCodec} into a single byte array and handed to a
+ * {@link WearPublishQueue}, so the sync never waits on the watch.
+ */
+final class WearPublisher {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String[] FORECAST_COLUMNS = {
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherContract.WeatherEntry.COLUMN_DEGREES,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC
+    };
+
+    // these indices must match the projection
+    private static final int COL_DATE = 0;
+    private static final int COL_WEATHER_ID = 1;
+    private static final int COL_MAX_TEMP = 2;
+    private static final int COL_MIN_TEMP = 3;
+    private static final int COL_HUMIDITY = 4;
+    private static final int COL_PRESSURE = 5;
+    private static final int COL_WIND_SPEED = 6;
+    private static final int COL_DEGREES = 7;
+    private static final int COL_SHORT_DESC = 8;
+
+    private final WearPublishQueue mQueue;
+
+    WearPublisher(WearPublishQueue queue) {
+        mQueue = queue;
+    }
+
+    /**
+     * Reads the forecast for the preferred location and queues it for the watch.
+     *
+     * @param context Context used to query the provider and format the temperatures
+     */
+    void publish(Context context) {
+        List<ForecastDay> days = queryForecast(context, Utility.getPreferredLocation(context),
+                System.currentTimeMillis(), WearContract.FORECAST_DAYS);
+        if (days.isEmpty()) {
+            return;
+        }
+        // The watch bundles the icons, so the condition id is all it needs to draw one
+        mQueue.publish(WearContract.DATA_PATH, WearContract.FORECAST, ForecastCodec.encode(days),
+                getDisplayedValues(days.get(0)));
+    }
+
+    /**
+     * @return what the watch face draws from the forecast: today's condition and temperatures
+     */
+    static byte[] getDisplayedValues(ForecastDay today) {
+        String displayed = today.weatherId + "|" + today.highText + "|" + today.lowText;
+        return displayed.getBytes(UTF_8);
+    }
+
+    /**
+     * @param context Context used to query the provider and format the temperatures
+     * @param locationSetting location to read the forecast for
+     * @param startDate first day to include
+     * @param maxDays the most days to return
+     * @return the forecast from startDate on, in date order
+     */
+    static List<ForecastDay> queryForecast(Context context, String locationSetting,
+                                           long startDate, int maxDays) {
+        Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                locationSetting, startDate);
+        Cursor cursor = context.getContentResolver().query(weatherUri, FORECAST_COLUMNS, null,
+                null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        List<ForecastDay> days = new ArrayList<>(maxDays);
+        if (cursor == null) {
+            return days;
+        }
+        try {
+            while (days.size() < maxDays && cursor.moveToNext()) {
+                double high = cursor.getDouble(COL_MAX_TEMP);
+                double low = cursor.getDouble(COL_MIN_TEMP);
+                days.add(new ForecastDay(
+                        cursor.getLong(COL_DATE),
+                        cursor.getInt(COL_WEATHER_ID),
+                        (float) high,
+                        (float) low,
+                        cursor.getFloat(COL_HUMIDITY),
+                        cursor.getFloat(COL_PRESSURE),
+                        cursor.getFloat(COL_WIND_SPEED),
+                        cursor.getFloat(COL_DEGREES),
+                        cursor.getString(COL_SHORT_DESC),
+                        Utility.formatTemperature(context, high),
+                        Utility.formatTemperature(context, low)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return days;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.annotation.SuppressLint;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.preference.PreferenceManager;
+import android.support.annotation.DrawableRes;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.TaskStackBuilder;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.example.android.sunshine.app.BitmapCache;
+import com.example.android.sunshine.app.MainActivity;
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Posts the daily forecast notification, at most once a day and only if the user wants it.
+ * Nothing about the notification, the large icon least of all, is built before it's due.
+ */
+final class WeatherNotificationProducer implements ForecastProducer {
+
+    private static final String LOG_TAG = WeatherNotificationProducer.class.getSimpleName();
+
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+    private static final int WEATHER_NOTIFICATION_ID = 3004;
+
+    /**
+     * Loads the notification's large icon.
+     */
+    interface LargeIconLoader {
+        /**
+         * @param context Context used to load the bitmap
+         * @param artUrl art pack image for the condition
+         * @param artResourceId built-in art for the condition, to fall back on
+         * @param width large icon width
+         * @param height large icon height
+         * @return the large icon
+         */
+        Bitmap load(Context context, String artUrl, @DrawableRes int artResourceId, int width,
+                    int height);
+    }
+
+    // Glide through BitmapCache, decoding at the large icon size.
+    private static final LargeIconLoader GLIDE_LOADER = new LargeIconLoader() {
+        @Override
+        public Bitmap load(Context context, String artUrl, int artResourceId, int width,
+                           int height) {
+            String largeIconKey = BitmapCache.key(artUrl, width, height);
+            Bitmap largeIcon = BitmapCache.get(context, largeIconKey);
+            if (largeIcon != null) {
+                return largeIcon;
+            }
+            try {
+                largeIcon = Glide.with(context)
+                        .load(artUrl)
+                        .asBitmap()
+                        .diskCacheStrategy(DiskCacheStrategy.ALL)
+                        .error(artResourceId)
+                        .fitCenter()
+                        .into(width, height).get();
+                BitmapCache.put(context, largeIconKey, largeIcon);
+                return largeIcon;
+            } catch (InterruptedException | ExecutionException e) {
+                Log.e(LOG_TAG, "Error retrieving large icon from " + artUrl, e);
+                return BitmapCache.getResource(context, artResourceId, width, height);
+            }
+        }
+    };
+
+    private final LargeIconLoader mLargeIconLoader;
+
+    WeatherNotificationProducer() {
+        this(GLIDE_LOADER);
+    }
+
+    WeatherNotificationProducer(LargeIconLoader largeIconLoader) {
+        mLargeIconLoader = largeIconLoader;
+    }
+
+    @Override
+    public boolean isDue(Context context) {
+        //checking the last update and notify if it' the first of the day
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        String displayNotificationsKey = context.getString(R.string.pref_enable_notifications_key);
+        boolean displayNotifications = prefs.getBoolean(displayNotificationsKey,
+                Boolean.parseBoolean(context.getString(R.string.pref_enable_notifications_default)));
+        if (!displayNotifications) {
+            return false;
+        }
+        String lastNotificationKey = context.getString(R.string.pref_last_notification);
+        long lastSync = prefs.getLong(lastNotificationKey, 0);
+        return System.currentTimeMillis() - lastSync >= DAY_IN_MILLIS;
+    }
+
+    @Override
+    public void produce(Context context, TodayForecast forecast) {
+        Resources resources = context.getResources();
+        int iconId = Utility.getIconResourceForWeatherCondition(forecast.weatherId);
+        int artResourceId = Utility.getArtResourceForWeatherCondition(forecast.weatherId);
+        String artUrl = Utility.getArtUrlForWeatherCondition(context, forecast.weatherId);
+
+        // On Honeycomb and higher devices, we can retrieve the size of the large icon
+        // Prior to that, we use a fixed size
+        @SuppressLint("InlinedApi")
+        int largeIconWidth = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width)
+                : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
+        @SuppressLint("InlinedApi")
+        int largeIconHeight = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height)
+                : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
+
+        // Retrieve the large icon
+        Bitmap largeIcon = mLargeIconLoader.load(context, artUrl, artResourceId,
+                largeIconWidth, largeIconHeight);
+        String title = context.getString(R.string.app_name);
+
+        // Define the text of the forecast.
+        String contentText = String.format(context.getString(R.string.format_notification),
+                forecast.desc,
+                Utility.formatTemperature(context, forecast.high),
+                Utility.formatTemperature(context, forecast.low));
+
+        // NotificationCompatBuilder is a very convenient way to build backward-compatible
+        // notifications.  Just throw in some data.
+        NotificationCompat.Builder mBuilder =
+                new NotificationCompat.Builder(context)
+                        .setColor(resources.getColor(R.color.primary_light))
+                        .setSmallIcon(iconId)
+                        .setLargeIcon(largeIcon)
+                        .setContentTitle(title)
+                        .setContentText(contentText);
+
+        // Make something interesting happen when the user clicks on the notification.
+        // In this case, opening the app is sufficient.
+        Intent resultIntent = new Intent(context, MainActivity.class);
+
+        // The stack builder object will contain an artificial back stack for the
+        // started Activity.
+        // This ensures that navigating backward from the Activity leads out of
+        // your application to the Home screen.
+        TaskStackBuilder stackBuilder = TaskStackBuilder.create(context);
+        stackBuilder.addNextIntent(resultIntent);
+        PendingIntent resultPendingIntent =
+                stackBuilder.getPendingIntent(
+                        0,
+                        PendingIntent.FLAG_UPDATE_CURRENT
+                );
+        mBuilder.setContentIntent(resultPendingIntent);
+
+        NotificationManager mNotificationManager =
+                (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        // WEATHER_NOTIFICATION_ID allows you to update the notification later on.
+        mNotificationManager.notify(WEATHER_NOTIFICATION_ID, mBuilder.build());
+
+        //refreshing last sync
+        SharedPreferences.Editor editor =
+                PreferenceManager.getDefaultSharedPreferences(context).edit();
+        editor.putLong(context.getString(R.string.pref_last_notification),
+                System.currentTimeMillis());
+        editor.commit();
+    }
+}
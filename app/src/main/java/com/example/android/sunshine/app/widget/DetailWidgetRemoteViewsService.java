@@ -13,7 +13,8 @@ import android.widget.RemoteViews;
 import android.widget.RemoteViewsService;
 
 import com.bumptech.glide.Glide;
-import com.bumptech.glide.request.target.Target;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.example.android.sunshine.app.BitmapCache;
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
@@ -42,21 +43,49 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
     static final int INDEX_WEATHER_MAX_TEMP = 4;
     static final int INDEX_WEATHER_MIN_TEMP = 5;
 
+    /**
+     * Everything a row shows, prepared when the data changes so building its views is only a
+     * matter of copying the fields.
+     */
+    private static final class Row {
+        final long id;
+        final int iconResourceId;
+        // Art from the art pack, or null to show the bundled icon
+        final Bitmap icon;
+        final String description;
+        final String date;
+        final String high;
+        final String low;
+        final Intent fillInIntent;
+
+        Row(long id, int iconResourceId, Bitmap icon, String description, String date,
+            String high, String low, Intent fillInIntent) {
+            this.id = id;
+            this.iconResourceId = iconResourceId;
+            this.icon = icon;
+            this.description = description;
+            this.date = date;
+            this.high = high;
+            this.low = low;
+            this.fillInIntent = fillInIntent;
+        }
+    }
+
     @Override
     public RemoteViewsFactory onGetViewFactory(Intent intent) {
         return new RemoteViewsFactory() {
-            private Cursor data = null;
+            // Prepared once per data set change; getViewAt only copies them into views.
+            private Row[] rows = new Row[0];
+            // Size of the icon cell in a row; art is decoded to this size and no larger.
+            private int iconSize;
 
             @Override
             public void onCreate() {
-                // Nothing to do
+                iconSize = getResources().getDimensionPixelSize(R.dimen.list_icon);
             }
 
             @Override
             public void onDataSetChanged() {
-                if (data != null) {
-                    data.close();
-                }
                 // This method is called by the app hosting the widget (e.g., the launcher)
                 // However, our ContentProvider is not exported so it doesn't have access to the
                 // data. Therefore we need to clear (and finally restore) the calling identity so
@@ -65,83 +94,114 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                 String location = Utility.getPreferredLocation(DetailWidgetRemoteViewsService.this);
                 Uri weatherForLocationUri = WeatherContract.WeatherEntry
                         .buildWeatherLocationWithStartDate(location, System.currentTimeMillis());
-                data = getContentResolver().query(weatherForLocationUri,
+                Cursor data = getContentResolver().query(weatherForLocationUri,
                         FORECAST_COLUMNS,
                         null,
                         null,
                         WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
                 Binder.restoreCallingIdentity(identityToken);
+
+                if (data == null) {
+                    rows = new Row[0];
+                    return;
+                }
+                try {
+                    boolean localGraphics =
+                            Utility.usingLocalGraphics(DetailWidgetRemoteViewsService.this);
+                    Row[] newRows = new Row[data.getCount()];
+                    for (int i = 0; i < newRows.length && data.moveToPosition(i); i++) {
+                        newRows[i] = prepareRow(data, location, localGraphics);
+                    }
+                    rows = newRows;
+                } finally {
+                    data.close();
+                }
             }
 
             @Override
             public void onDestroy() {
-                if (data != null) {
-                    data.close();
-                    data = null;
-                }
+                rows = new Row[0];
             }
 
             @Override
             public int getCount() {
-                return data == null ? 0 : data.getCount();
+                return rows.length;
             }
 
             @Override
             public RemoteViews getViewAt(int position) {
-                if (position == AdapterView.INVALID_POSITION ||
-                        data == null || !data.moveToPosition(position)) {
+                Row[] rows = this.rows;
+                if (position == AdapterView.INVALID_POSITION || position >= rows.length) {
                     return null;
                 }
+                Row row = rows[position];
                 RemoteViews views = new RemoteViews(getPackageName(),
                         R.layout.widget_detail_list_item);
+                if (row.icon != null) {
+                    views.setImageViewBitmap(R.id.widget_icon, row.icon);
+                } else {
+                    views.setImageViewResource(R.id.widget_icon, row.iconResourceId);
+                }
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
+                    setRemoteContentDescription(views, row.description);
+                }
+                views.setTextViewText(R.id.widget_date, row.date);
+                views.setTextViewText(R.id.widget_description, row.description);
+                views.setTextViewText(R.id.widget_high_temperature, row.high);
+                views.setTextViewText(R.id.widget_low_temperature, row.low);
+                views.setOnClickFillInIntent(R.id.widget_list_item, row.fillInIntent);
+                return views;
+            }
+
+            private Row prepareRow(Cursor data, String locationSetting, boolean localGraphics) {
                 int weatherId = data.getInt(INDEX_WEATHER_CONDITION_ID);
                 int weatherArtResourceId = Utility.getIconResourceForWeatherCondition(weatherId);
                 Bitmap weatherArtImage = null;
-                if ( !Utility.usingLocalGraphics(DetailWidgetRemoteViewsService.this) ) {
-                    String weatherArtResourceUrl = Utility.getArtUrlForWeatherCondition(
-                            DetailWidgetRemoteViewsService.this, weatherId);
-                    try {
-                        weatherArtImage = Glide.with(DetailWidgetRemoteViewsService.this)
-                                .load(weatherArtResourceUrl)
-                                .asBitmap()
-                                .error(weatherArtResourceId)
-                                .into(Target.SIZE_ORIGINAL, Target.SIZE_ORIGINAL).get();
-                    } catch (InterruptedException | ExecutionException e) {
-                        Log.e(LOG_TAG, "Error retrieving large icon from " + weatherArtResourceUrl, e);
-                    }
+                if ( !localGraphics ) {
+                    weatherArtImage = loadArt(weatherId, weatherArtResourceId);
                 }
-                String description = data.getString(INDEX_WEATHER_DESC);
                 long dateInMillis = data.getLong(INDEX_WEATHER_DATE);
                 String formattedDate = Utility.getFriendlyDayString(
                         DetailWidgetRemoteViewsService.this, dateInMillis, false);
-                double maxTemp = data.getDouble(INDEX_WEATHER_MAX_TEMP);
-                double minTemp = data.getDouble(INDEX_WEATHER_MIN_TEMP);
-                String formattedMaxTemperature =
-                        Utility.formatTemperature(DetailWidgetRemoteViewsService.this, maxTemp);
-                String formattedMinTemperature =
-                        Utility.formatTemperature(DetailWidgetRemoteViewsService.this, minTemp);
-                if (weatherArtImage != null) {
-                    views.setImageViewBitmap(R.id.widget_icon, weatherArtImage);
-                } else {
-                    views.setImageViewResource(R.id.widget_icon, weatherArtResourceId);
-                }
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
-                    setRemoteContentDescription(views, description);
-                }
-                views.setTextViewText(R.id.widget_date, formattedDate);
-                views.setTextViewText(R.id.widget_description, description);
-                views.setTextViewText(R.id.widget_high_temperature, formattedMaxTemperature);
-                views.setTextViewText(R.id.widget_low_temperature, formattedMinTemperature);
+                String formattedMaxTemperature = Utility.formatTemperature(
+                        DetailWidgetRemoteViewsService.this,
+                        data.getDouble(INDEX_WEATHER_MAX_TEMP));
+                String formattedMinTemperature = Utility.formatTemperature(
+                        DetailWidgetRemoteViewsService.this,
+                        data.getDouble(INDEX_WEATHER_MIN_TEMP));
 
                 final Intent fillInIntent = new Intent();
-                String locationSetting =
-                        Utility.getPreferredLocation(DetailWidgetRemoteViewsService.this);
                 Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
                         locationSetting,
                         dateInMillis);
                 fillInIntent.setData(weatherUri);
-                views.setOnClickFillInIntent(R.id.widget_list_item, fillInIntent);
-                return views;
+                return new Row(data.getLong(INDEX_WEATHER_ID), weatherArtResourceId,
+                        weatherArtImage, data.getString(INDEX_WEATHER_DESC), formattedDate,
+                        formattedMaxTemperature, formattedMinTemperature, fillInIntent);
+            }
+
+            private Bitmap loadArt(int weatherId, int weatherArtResourceId) {
+                String weatherArtResourceUrl = Utility.getArtUrlForWeatherCondition(
+                        DetailWidgetRemoteViewsService.this, weatherId);
+                // Rows share art, so each distinct image is only loaded once per process
+                String artKey = BitmapCache.key(weatherArtResourceUrl, iconSize, iconSize);
+                Bitmap weatherArtImage =
+                        BitmapCache.get(DetailWidgetRemoteViewsService.this, artKey);
+                if (weatherArtImage == null) {
+                    try {
+                        weatherArtImage = Glide.with(DetailWidgetRemoteViewsService.this)
+                                .load(weatherArtResourceUrl)
+                                .asBitmap()
+                                .diskCacheStrategy(DiskCacheStrategy.ALL)
+                                .error(weatherArtResourceId)
+                                .fitCenter()
+                                .into(iconSize, iconSize).get();
+                        BitmapCache.put(DetailWidgetRemoteViewsService.this, artKey, weatherArtImage);
+                    } catch (InterruptedException | ExecutionException e) {
+                        Log.e(LOG_TAG, "Error retrieving large icon from " + weatherArtResourceUrl, e);
+                    }
+                }
+                return weatherArtImage;
             }
 
             @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1)
@@ -161,8 +221,9 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
 
             @Override
             public long getItemId(int position) {
-                if (data.moveToPosition(position))
-                    return data.getLong(INDEX_WEATHER_ID);
+                Row[] rows = this.rows;
+                if (position >= 0 && position < rows.length)
+                    return rows[position].id;
                 return position;
             }
 
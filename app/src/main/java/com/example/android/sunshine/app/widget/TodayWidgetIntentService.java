@@ -20,12 +20,15 @@ import android.app.IntentService;
 import android.app.PendingIntent;
 import android.appwidget.AppWidgetManager;
 import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.util.DisplayMetrics;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
 import android.util.TypedValue;
 import android.widget.RemoteViews;
 
@@ -34,6 +37,8 @@ import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
 
+import java.util.Arrays;
+
 /**
  * IntentService which handles updating all Today widgets with the latest data
  */
@@ -50,22 +55,55 @@ public class TodayWidgetIntentService extends IntentService {
     private static final int INDEX_MAX_TEMP = 2;
     private static final int INDEX_MIN_TEMP = 3;
 
+    /**
+     * Boolean extra asking to push the views to every widget even if they look unchanged, for
+     * when the widget host may have lost them.
+     */
+    static final String EXTRA_FORCE_UPDATE = "force_update";
+
+    // What we last pushed to each widget: a hash of the layout and the displayed values.
+    // Guarded by itself, widgets are forgotten from the provider on the main thread.
+    private static final SparseIntArray sRenderedHashes = new SparseIntArray();
+
     public TodayWidgetIntentService() {
         super("TodayWidgetIntentService");
     }
 
     @Override
     protected void onHandleIntent(Intent intent) {
+        boolean force = intent != null && intent.getBooleanExtra(EXTRA_FORCE_UPDATE, false);
+        updateWidgets(this, force);
+    }
+
+    /**
+     * @param context Context used to reach the widgets and the provider
+     * @return the ids of every Today widget
+     */
+    static int[] getWidgetIds(Context context) {
+        return AppWidgetManager.getInstance(context).getAppWidgetIds(
+                new ComponentName(context, TodayWidgetProvider.class));
+    }
+
+    /**
+     * Pushes today's forecast to every Today widget.  Blocks on the provider, so it must not be
+     * called from the UI thread.
+     *
+     * @param context Context used to reach the widgets and the provider
+     * @param force true to push the views even to widgets that look up to date
+     */
+    static void updateWidgets(Context context, boolean force) {
         // Retrieve all of the Today widget ids: these are the widgets we need to update
-        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(this);
-        int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(this,
-                TodayWidgetProvider.class));
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+        int[] appWidgetIds = getWidgetIds(context);
+        if (appWidgetIds.length == 0) {
+            return;
+        }
 
         // Get today's data from the ContentProvider
-        String location = Utility.getPreferredLocation(this);
+        String location = Utility.getPreferredLocation(context);
         Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
                 location, System.currentTimeMillis());
-        Cursor data = getContentResolver().query(weatherForLocationUri, FORECAST_COLUMNS, null,
+        Cursor data = context.getContentResolver().query(weatherForLocationUri, FORECAST_COLUMNS, null,
                 null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
         if (data == null) {
             return;
@@ -81,16 +119,23 @@ public class TodayWidgetIntentService extends IntentService {
         String description = data.getString(INDEX_SHORT_DESC);
         double maxTemp = data.getDouble(INDEX_MAX_TEMP);
         double minTemp = data.getDouble(INDEX_MIN_TEMP);
-        String formattedMaxTemperature = Utility.formatTemperature(this, maxTemp);
-        String formattedMinTemperature = Utility.formatTemperature(this, minTemp);
+        String formattedMaxTemperature = Utility.formatTemperature(context, maxTemp);
+        String formattedMinTemperature = Utility.formatTemperature(context, minTemp);
         data.close();
 
+        int contentHash = Arrays.hashCode(new Object[]{
+                weatherArtResourceId, description, formattedMaxTemperature, formattedMinTemperature
+        });
+        // Widgets of the same size share the same views, so each layout is built at most once.
+        SparseArray<RemoteViews> viewsByLayout = new SparseArray<>(3);
+        PendingIntent pendingIntent = null;
+
         // Perform this loop procedure for each Today widget
         for (int appWidgetId : appWidgetIds) {
             // Find the correct layout based on the widget's width
-            int widgetWidth = getWidgetWidth(appWidgetManager, appWidgetId);
-            int defaultWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
-            int largeWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_large_width);
+            int widgetWidth = getWidgetWidth(context, appWidgetManager, appWidgetId);
+            int defaultWidth = context.getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
+            int largeWidth = context.getResources().getDimensionPixelSize(R.dimen.widget_today_large_width);
             int layoutId;
             if (widgetWidth >= largeWidth) {
                 layoutId = R.layout.widget_today_large;
@@ -99,7 +144,20 @@ public class TodayWidgetIntentService extends IntentService {
             } else {
                 layoutId = R.layout.widget_today_small;
             }
-            RemoteViews views = new RemoteViews(getPackageName(), layoutId);
+
+            // Skip widgets already showing exactly this
+            int renderedHash = 31 * layoutId + contentHash;
+            if (!force && isRendered(appWidgetId, renderedHash)) {
+                continue;
+            }
+
+            RemoteViews views = viewsByLayout.get(layoutId);
+            if (views != null) {
+                appWidgetManager.updateAppWidget(appWidgetId, views);
+                setRendered(appWidgetId, renderedHash);
+                continue;
+            }
+            views = new RemoteViews(context.getPackageName(), layoutId);
 
             // Add the data to the RemoteViews
             views.setImageViewResource(R.id.widget_icon, weatherArtResourceId);
@@ -112,40 +170,73 @@ public class TodayWidgetIntentService extends IntentService {
             views.setTextViewText(R.id.widget_low_temperature, formattedMinTemperature);
 
             // Create an Intent to launch MainActivity
-            Intent launchIntent = new Intent(this, MainActivity.class);
-            PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, launchIntent, 0);
+            if (pendingIntent == null) {
+                Intent launchIntent = new Intent(context, MainActivity.class);
+                pendingIntent = PendingIntent.getActivity(context, 0, launchIntent, 0);
+            }
             views.setOnClickPendingIntent(R.id.widget, pendingIntent);
+            viewsByLayout.put(layoutId, views);
 
             // Tell the AppWidgetManager to perform an update on the current app widget
             appWidgetManager.updateAppWidget(appWidgetId, views);
+            setRendered(appWidgetId, renderedHash);
+        }
+    }
+
+    private static boolean isRendered(int appWidgetId, int renderedHash) {
+        synchronized (sRenderedHashes) {
+            return sRenderedHashes.indexOfKey(appWidgetId) >= 0
+                    && sRenderedHashes.get(appWidgetId) == renderedHash;
+        }
+    }
+
+    private static void setRendered(int appWidgetId, int renderedHash) {
+        synchronized (sRenderedHashes) {
+            sRenderedHashes.put(appWidgetId, renderedHash);
+        }
+    }
+
+    /**
+     * Forgets what was pushed to deleted widgets.
+     *
+     * @param appWidgetIds ids of the deleted widgets
+     */
+    static void forgetWidgets(int[] appWidgetIds) {
+        synchronized (sRenderedHashes) {
+            for (int appWidgetId : appWidgetIds) {
+                sRenderedHashes.delete(appWidgetId);
+            }
         }
     }
 
-    private int getWidgetWidth(AppWidgetManager appWidgetManager, int appWidgetId) {
+    private static int getWidgetWidth(Context context, AppWidgetManager appWidgetManager,
+                                      int appWidgetId) {
         // Prior to Jelly Bean, widgets were always their default size
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
-            return getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
+            return context.getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
         }
         // For Jelly Bean and higher devices, widgets can be resized - the current size can be
         // retrieved from the newly added App Widget Options
-        return getWidgetWidthFromOptions(appWidgetManager, appWidgetId);
+        return getWidgetWidthFromOptions(context, appWidgetManager, appWidgetId);
     }
 
     @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
-    private int getWidgetWidthFromOptions(AppWidgetManager appWidgetManager, int appWidgetId) {
+    private static int getWidgetWidthFromOptions(Context context,
+                                                 AppWidgetManager appWidgetManager,
+                                                 int appWidgetId) {
         Bundle options = appWidgetManager.getAppWidgetOptions(appWidgetId);
         if (options.containsKey(AppWidgetManager.OPTION_APPWIDGET_MIN_WIDTH)) {
             int minWidthDp = options.getInt(AppWidgetManager.OPTION_APPWIDGET_MIN_WIDTH);
             // The width returned is in dp, but we'll convert it to pixels to match the other widths
-            DisplayMetrics displayMetrics = getResources().getDisplayMetrics();
+            DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
             return (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, minWidthDp,
                     displayMetrics);
         }
-        return  getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
+        return  context.getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
     }
 
     @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1)
-    private void setRemoteContentDescription(RemoteViews views, String description) {
+    private static void setRemoteContentDescription(RemoteViews views, String description) {
         views.setContentDescription(R.id.widget_icon, description);
     }
 }
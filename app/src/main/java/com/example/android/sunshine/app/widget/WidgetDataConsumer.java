@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.annotation.TargetApi;
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.sync.DataUpdateDispatcher;
+
+/**
+ * Refreshes the widgets when the forecast they show changes: the Today widgets when today's
+ * forecast for the preferred location changed, the detail widgets when any day for it did.
+ */
+public final class WidgetDataConsumer implements DataUpdateDispatcher.Consumer {
+
+    @Override
+    public void onDataUpdated(Context context, DataUpdateDispatcher.DataUpdate update) {
+        String location = Utility.getPreferredLocation(context);
+        if (!update.hasLocation(location)) {
+            return;
+        }
+
+        // We're on the sync or push thread already, no need to go through the service.
+        if (update.covers(location, System.currentTimeMillis())) {
+            TodayWidgetIntentService.updateWidgets(context, false);
+        }
+
+        // Detail widgets are only available on Honeycomb+ devices
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            notifyDetailWidgets(context);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void notifyDetailWidgets(Context context) {
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+        int[] appWidgetIds = appWidgetManager.getAppWidgetIds(
+                new ComponentName(context, DetailWidgetProvider.class));
+        if (appWidgetIds.length > 0) {
+            appWidgetManager.notifyAppWidgetViewDataChanged(appWidgetIds, R.id.widget_list);
+        }
+    }
+}
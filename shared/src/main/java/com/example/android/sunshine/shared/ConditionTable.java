@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * Dense lookup table from an OpenWeatherMap condition id to its condition slug, shared by the
+ * phone and the watch so both resolve a condition id to the same icon and art.  Each side maps
+ * the slug to its own resources.
+ * <p>
+ * Based on weather code data found at:
+ * http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+ */
+public final class ConditionTable {
+
+    public static final int MAX_CONDITION_ID = 999;
+
+    public static final int SLUG_NONE = -1;
+    public static final int SLUG_STORM = 0;
+    public static final int SLUG_LIGHT_RAIN = 1;
+    public static final int SLUG_RAIN = 2;
+    public static final int SLUG_SNOW = 3;
+    public static final int SLUG_FOG = 4;
+    public static final int SLUG_CLEAR = 5;
+    public static final int SLUG_LIGHT_CLOUDS = 6;
+    public static final int SLUG_CLOUDS = 7;
+
+    private static final String[] SLUG_NAMES = {
+            "storm",
+            "light_rain",
+            "rain",
+            "snow",
+            "fog",
+            "clear",
+            "light_clouds",
+            "clouds"
+    };
+
+    // Per condition id: index into the slug arrays
+    private static final byte[] sSlugs = new byte[MAX_CONDITION_ID + 1];
+
+    static {
+        fill(SLUG_NONE, 0, MAX_CONDITION_ID);
+        fill(SLUG_STORM, 200, 232);
+        fill(SLUG_LIGHT_RAIN, 300, 321);
+        fill(SLUG_RAIN, 500, 504);
+        sSlugs[511] = SLUG_SNOW;
+        fill(SLUG_RAIN, 520, 531);
+        fill(SLUG_SNOW, 600, 622);
+        fill(SLUG_FOG, 701, 761);
+        sSlugs[781] = SLUG_STORM;
+        sSlugs[800] = SLUG_CLEAR;
+        sSlugs[801] = SLUG_LIGHT_CLOUDS;
+        fill(SLUG_CLOUDS, 802, 804);
+    }
+
+    private ConditionTable() {
+    }
+
+    private static void fill(int value, int from, int to) {
+        for (int i = from; i <= to; i++) {
+            sSlugs[i] = (byte) value;
+        }
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return the slug index for the condition, or {@link #SLUG_NONE}
+     */
+    public static int getSlug(int weatherId) {
+        if (weatherId < 0 || weatherId > MAX_CONDITION_ID) {
+            return SLUG_NONE;
+        }
+        return sSlugs[weatherId];
+    }
+
+    /**
+     * @return the number of distinct slugs
+     */
+    public static int getSlugCount() {
+        return SLUG_NAMES.length;
+    }
+
+    /**
+     * @param slug slug index, not {@link #SLUG_NONE}
+     * @return the slug's name, as used in art pack URLs
+     */
+    public static String getSlugName(int slug) {
+        return SLUG_NAMES[slug];
+    }
+}
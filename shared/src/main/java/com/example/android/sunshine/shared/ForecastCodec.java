@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of an N-day forecast, sent to the watch as a single DataItem byte
+ * array.  All numbers are big-endian:
+ * <pre>
+ * byte   version
+ * short  string count, then per string: short byte length, UTF-8 bytes
+ * byte   day count, then per day a fixed {@value #DAY_BYTES} byte record:
+ *        long date, short weather id, float high, low, humidity, pressure, wind, degrees,
+ *        short description, high text and low text indices into the string table
+ * </pre>
+ * Strings go in a table so the descriptions and formatted temperatures repeated across days
+ * are only sent once.  A decoder rejects any version it doesn't know rather than guess.
+ */
+public final class ForecastCodec {
+
+    public static final int VERSION = 1;
+    public static final int MAX_DAYS = 14;
+
+    static final int DAY_BYTES = 8 + 2 + 6 * 4 + 3 * 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private ForecastCodec() {
+    }
+
+    /**
+     * @param days at most {@link #MAX_DAYS} days, in date order
+     * @return the encoded forecast
+     */
+    public static byte[] encode(List<ForecastDay> days) {
+        if (days.size() > MAX_DAYS) {
+            throw new IllegalArgumentException("Too many days: " + days.size());
+        }
+        List<byte[]> strings = new ArrayList<>();
+        Map<String, Integer> stringIndices = new HashMap<>();
+        int[] indices = new int[days.size() * 3];
+        int stringBytes = 0;
+        for (int i = 0; i < days.size(); i++) {
+            ForecastDay day = days.get(i);
+            String[] dayStrings = {day.description, day.highText, day.lowText};
+            for (int j = 0; j < dayStrings.length; j++) {
+                Integer index = stringIndices.get(dayStrings[j]);
+                if (index == null) {
+                    byte[] utf8 = dayStrings[j].getBytes(UTF_8);
+                    if (utf8.length > Short.MAX_VALUE) {
+                        throw new IllegalArgumentException("String too long: " + dayStrings[j]);
+                    }
+                    index = strings.size();
+                    strings.add(utf8);
+                    stringIndices.put(dayStrings[j], index);
+                    stringBytes += 2 + utf8.length;
+                }
+                indices[i * 3 + j] = index;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(
+                1 + 2 + stringBytes + 1 + days.size() * DAY_BYTES);
+        buffer.put((byte) VERSION);
+        buffer.putShort((short) strings.size());
+        for (byte[] utf8 : strings) {
+            buffer.putShort((short) utf8.length);
+            buffer.put(utf8);
+        }
+        buffer.put((byte) days.size());
+        for (int i = 0; i < days.size(); i++) {
+            ForecastDay day = days.get(i);
+            buffer.putLong(day.date);
+            buffer.putShort((short) day.weatherId);
+            buffer.putFloat(day.high);
+            buffer.putFloat(day.low);
+            buffer.putFloat(day.humidity);
+            buffer.putFloat(day.pressure);
+            buffer.putFloat(day.windSpeed);
+            buffer.putFloat(day.degrees);
+            buffer.putShort((short) indices[i * 3]);
+            buffer.putShort((short) indices[i * 3 + 1]);
+            buffer.putShort((short) indices[i * 3 + 2]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @param data a forecast produced by {@link #encode}
+     * @return the days, in the order they were encoded
+     * @throws IllegalArgumentException if the data is truncated, malformed or of another version
+     */
+    public static List<ForecastDay> decode(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        try {
+            int version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported forecast version " + version);
+            }
+            int stringCount = buffer.getShort();
+            if (stringCount < 0) {
+                throw new IllegalArgumentException("Bad string count " + stringCount);
+            }
+            String[] strings = new String[stringCount];
+            for (int i = 0; i < strings.length; i++) {
+                int length = buffer.getShort();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IllegalArgumentException("Bad string length " + length);
+                }
+                strings[i] = new String(data, buffer.position(), length, UTF_8);
+                buffer.position(buffer.position() + length);
+            }
+            int dayCount = buffer.get();
+            if (dayCount < 0 || dayCount > MAX_DAYS || buffer.remaining() != dayCount * DAY_BYTES) {
+                throw new IllegalArgumentException("Bad day count " + dayCount);
+            }
+            List<ForecastDay> days = new ArrayList<>(dayCount);
+            for (int i = 0; i < dayCount; i++) {
+                days.add(new ForecastDay(
+                        buffer.getLong(),
+                        buffer.getShort(),
+                        buffer.getFloat(),
+                        buffer.getFloat(),
+                        buffer.getFloat(),
+                        buffer.getFloat(),
+                        buffer.getFloat(),
+                        buffer.getFloat(),
+                        string(strings, buffer.getShort()),
+                        string(strings, buffer.getShort()),
+                        string(strings, buffer.getShort())));
+            }
+            return days;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated forecast", e);
+        }
+    }
+
+    private static String string(String[] strings, int index) {
+        if (index < 0 || index >= strings.length) {
+            throw new IllegalArgumentException("Bad string index " + index);
+        }
+        return strings[index];
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * One day of the forecast the phone sends to the watch.  Values are in the provider's units
+ * (Celsius, hPa, km/h); the formatted temperatures are in the user's units, since only the
+ * phone knows which ones those are.
+ */
+public final class ForecastDay {
+
+    public final long date;
+    public final int weatherId;
+    public final float high;
+    public final float low;
+    public final float humidity;
+    public final float pressure;
+    public final float windSpeed;
+    public final float degrees;
+    public final String description;
+    public final String highText;
+    public final String lowText;
+
+    public ForecastDay(long date, int weatherId, float high, float low, float humidity,
+                       float pressure, float windSpeed, float degrees, String description,
+                       String highText, String lowText) {
+        this.date = date;
+        this.weatherId = weatherId;
+        this.high = high;
+        this.low = low;
+        this.humidity = humidity;
+        this.pressure = pressure;
+        this.windSpeed = windSpeed;
+        this.degrees = degrees;
+        this.description = description;
+        this.highText = highText;
+        this.lowText = lowText;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ForecastDay)) {
+            return false;
+        }
+        ForecastDay other = (ForecastDay) o;
+        return date == other.date
+                && weatherId == other.weatherId
+                && Float.compare(high, other.high) == 0
+                && Float.compare(low, other.low) == 0
+                && Float.compare(humidity, other.humidity) == 0
+                && Float.compare(pressure, other.pressure) == 0
+                && Float.compare(windSpeed, other.windSpeed) == 0
+                && Float.compare(degrees, other.degrees) == 0
+                && description.equals(other.description)
+                && highText.equals(other.highText)
+                && lowText.equals(other.lowText);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (date ^ (date >>> 32));
+        result = 31 * result + weatherId;
+        result = 31 * result + Float.floatToIntBits(high);
+        result = 31 * result + Float.floatToIntBits(low);
+        result = 31 * result + description.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ForecastDay{date=" + date + ", weatherId=" + weatherId + ", high=" + high
+                + ", low=" + low + ", description=" + description + "}";
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.shared;
+
+/**
+ * Path and keys of the weather DataItem the phone publishes for the watch face.
+ */
+public final class WearContract {
+
+    public static final String DATA_PATH = "/sunshine";
+
+    // The forecast from today on, encoded by ForecastCodec
+    public static final String FORECAST = "FORECAST";
+    public static final int FORECAST_DAYS = 7;
+
+    private WearContract() {
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+public class TestWatchFaceRenderer extends AndroidTestCase {
+
+    private static final int FACE_SIZE = 320;
+    private static final int FRAMES = 59;
+
+    private WatchFaceRenderer mRenderer;
+    private Bitmap mFace;
+    private Canvas mCanvas;
+    private Rect mBounds;
+    private long mMinuteStart;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mRenderer = new WatchFaceRenderer(mContext.getResources());
+        mRenderer.setTimeZone(TimeZone.getTimeZone("UTC"));
+        mRenderer.setWeather("21°", "12°", icon(800));
+        mFace = Bitmap.createBitmap(FACE_SIZE, FACE_SIZE, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mFace);
+        mBounds = new Rect(0, 0, FACE_SIZE, FACE_SIZE);
+
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(2016, Calendar.JANUARY, 26, 23, 58);
+        mMinuteStart = calendar.getTimeInMillis();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mRenderer.release();
+        mFace.recycle();
+        super.tearDown();
+    }
+
+    public void testInteractiveFramesDoNotAllocate() {
+        assertNoAllocations();
+    }
+
+    public void testAmbientFramesDoNotAllocate() {
+        mRenderer.setAmbient(true, true);
+        assertNoAllocations();
+    }
+
+    public void testTextChangesWithTheMinuteAndDay() {
+        mRenderer.draw(mCanvas, mBounds, mMinuteStart);
+        assertEquals("23:58", mRenderer.getTimeText());
+        String today = mRenderer.getDateText();
+
+        mRenderer.draw(mCanvas, mBounds, mMinuteStart + 59 * 1000);
+        assertEquals("23:58", mRenderer.getTimeText());
+
+        mRenderer.draw(mCanvas, mBounds, mMinuteStart + 60 * 1000);
+        assertEquals("23:59", mRenderer.getTimeText());
+        assertSame("Error: The date should not be formatted again within a day",
+                today, mRenderer.getDateText());
+
+        mRenderer.draw(mCanvas, mBounds, mMinuteStart + 2 * 60 * 1000);
+        assertEquals("00:00", mRenderer.getTimeText());
+        assertFalse("Error: The date should change at midnight",
+                today.equals(mRenderer.getDateText()));
+    }
+
+    public void testStaticLayerIsOnlyRebuiltOnChange() {
+        for (int i = 0; i < FRAMES; i++) {
+            mRenderer.draw(mCanvas, mBounds, mMinuteStart + i * 1000);
+        }
+        assertEquals("Error: Frames within a day should share one layer",
+                1, mRenderer.getLayerBuilds());
+
+        mRenderer.setWeather("22°", "12°", icon(500));
+        mRenderer.draw(mCanvas, mBounds, mMinuteStart);
+        assertEquals("Error: New weather should rebuild the layer", 2, mRenderer.getLayerBuilds());
+
+        mRenderer.setAmbient(true, false);
+        mRenderer.draw(mCanvas, mBounds, mMinuteStart);
+        mRenderer.setAmbient(false, false);
+        mRenderer.draw(mCanvas, mBounds, mMinuteStart);
+        assertEquals("Error: Each mode should keep its own layer", 3, mRenderer.getLayerBuilds());
+
+        // 00:00 the next day
+        mRenderer.draw(mCanvas, mBounds, mMinuteStart + 2 * 60 * 1000);
+        assertEquals("Error: A new day should rebuild the layer", 4, mRenderer.getLayerBuilds());
+    }
+
+    private Bitmap icon(int weatherId) {
+        return WeatherIcons.decodeIcon(mContext.getResources(), weatherId,
+                mContext.getResources().getInteger(R.integer.icon_size));
+    }
+
+    /*
+        Draws a minute's worth of one second frames into the offscreen face after a first frame
+        that formats the text, counting what the drawing thread allocates.
+     */
+    // The alloc counters are deprecated, but they're still the only per-thread object count.
+    @SuppressWarnings("deprecation")
+    private void assertNoAllocations() {
+        mRenderer.draw(mCanvas, mBounds, mMinuteStart);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 1; i <= FRAMES; i++) {
+            mRenderer.draw(mCanvas, mBounds, mMinuteStart + i * 1000);
+        }
+        Debug.stopAllocCounting();
+        int allocations = Debug.getThreadAllocCount();
+
+        assertEquals("Error: Drawing " + FRAMES + " frames within a minute allocated "
+                + allocations + " objects", 0, allocations);
+    }
+}
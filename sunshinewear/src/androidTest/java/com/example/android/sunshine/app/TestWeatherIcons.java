@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.test.AndroidTestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TestWeatherIcons extends AndroidTestCase {
+
+    private static final int[] WEATHER_IDS = {211, 301, 500, 511, 741, 800, 801, 804};
+
+    private int mIconSize;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mIconSize = mContext.getResources().getInteger(R.integer.icon_size);
+    }
+
+    public void testIconsAreDecodedAtTheIconSize() {
+        for (int weatherId : WEATHER_IDS) {
+            Bitmap icon = WeatherIcons.decodeIcon(mContext.getResources(), weatherId, mIconSize);
+            assertNotNull("Error: No icon for " + weatherId, icon);
+            assertEquals(mIconSize, icon.getWidth());
+            assertEquals(mIconSize, icon.getHeight());
+            assertTrue("Error: Icons are drawn over the background and need alpha",
+                    icon.hasAlpha());
+        }
+    }
+
+    public void testUnknownConditionHasNoIcon() {
+        assertNull(WeatherIcons.decodeIcon(mContext.getResources(), 0, mIconSize));
+        assertNull(WeatherIcons.decodeIcon(mContext.getResources(), 1000, mIconSize));
+    }
+
+    public void testLoadDeliversOnTheMainThread() throws InterruptedException {
+        final CountDownLatch loaded = new CountDownLatch(1);
+        final AtomicBoolean onMainThread = new AtomicBoolean();
+        final AtomicReference<Bitmap> result = new AtomicReference<>();
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                // a size no other test uses, so the icon can't already be cached
+                WeatherIcons.load(mContext.getResources(), 800, mIconSize + 1,
+                        new WeatherIcons.Callback() {
+                            @Override
+                            public void onIconLoaded(Bitmap icon) {
+                                onMainThread.set(Looper.myLooper() == Looper.getMainLooper());
+                                result.set(icon);
+                                loaded.countDown();
+                            }
+                        });
+            }
+        });
+        assertTrue("Error: The icon was never delivered", loaded.await(5, TimeUnit.SECONDS));
+        assertTrue("Error: The icon should be delivered on the main thread", onMainThread.get());
+        assertEquals(mIconSize + 1, result.get().getWidth());
+    }
+
+    public void testLoadOffTheMainThreadIsRejected() {
+        try {
+            WeatherIcons.load(mContext.getResources(), 800, mIconSize,
+                    new WeatherIcons.Callback() {
+                        @Override
+                        public void onIconLoaded(Bitmap icon) {
+                        }
+                    });
+            fail("Error: Loading off the main thread should throw");
+        } catch (IllegalStateException expected) {
+        }
+    }
+}
@@ -22,13 +22,8 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Matrix;
-import android.graphics.Paint;
 import android.graphics.Rect;
-import android.graphics.Typeface;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
@@ -40,10 +35,12 @@ import android.view.Gravity;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
 
+import com.example.android.sunshine.shared.ForecastCodec;
+import com.example.android.sunshine.shared.ForecastDay;
+import com.example.android.sunshine.shared.WearContract;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
-import com.google.android.gms.wearable.Asset;
 import com.google.android.gms.wearable.DataApi;
 import com.google.android.gms.wearable.DataEvent;
 import com.google.android.gms.wearable.DataEventBuffer;
@@ -55,12 +52,9 @@ import com.google.android.gms.wearable.NodeApi;
 import com.google.android.gms.wearable.PutDataRequest;
 import com.google.android.gms.wearable.Wearable;
 
-import java.io.InputStream;
 import java.lang.ref.WeakReference;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.Date;
-import java.util.Locale;
+import java.util.List;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
@@ -69,9 +63,6 @@ import java.util.concurrent.TimeUnit;
  * low-bit ambient mode, the text is drawn without anti-aliasing in ambient mode.
  */
 public class DigitalWatchFace extends CanvasWatchFaceService {
-    private static final Typeface NORMAL_TYPEFACE =
-            Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
-
     /**
      * Update rate in milliseconds for interactive mode. We update once a second since seconds are
      * displayed in interactive mode.
@@ -123,58 +114,23 @@ public class DigitalWatchFace extends CanvasWatchFaceService {
         boolean mLowBitAmbient;
         boolean mAmbient;
 
-        // date and format objects
-        Calendar mCalendar;
-        Date mDate;
-        SimpleDateFormat mDateFormat;
-        SimpleDateFormat mTimeFormat;
-
-        // paint for drawing different elements
-        Paint mBackgroundPaint;
-        Paint mWhiteTextPaint;
-        Paint mGreyTextPaint;
-        Paint mWeatherIconPaint;
+        WatchFaceRenderer mRenderer;
 
         GoogleApiClient mGoogleApiClient;
+        WeatherCache mWeatherCache;
 
-        // tags to get weather info from data API
-        String LOW_TEMP = "LOW_TEMP";
-        String HIGH_TEMP = "HIGH_TEMP";
-        String WEATHER_ICON = "WEATHER_ICON";
-        String DATA_PATH = "/sunshine";
-
-        String mHighTemp;
-        String mLowTemp;
-        Bitmap mWeatherIconBitmap;
-
-        // position to draw elements
-        float mTimeXOffset;
-        float mTimeYOffset;
-        float mDateXOffset;
-        float mDateYOffset;
-        float mSeparatorXOffset;
-        float mSeparatorYOffset;
-        float mIconXOffset;
-        float mIconYOffset;
-        float mHighXOffset;
-        float mHighYOffset;
-        float mLowXOffset;
-        float mLowYOffset;
-        float mSeparatorLength;
-
-        // size of elements
-        float mTimeTextSize;
-        float mDateTextSize;
-        float mHighTempTextSize;
-        float mLowTempTextSize;
-        int iconSize;
+        int mIconSize;
+        // The forecast from the phone and the day of it being shown
+        List<ForecastDay> mDays;
+        ForecastDay mShownDay;
+        // Bumped for every forecast shown, so an icon decoded for an older one is dropped
+        int mWeatherGeneration;
 
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
                 // Time zone change - redraw watch face
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                initFormats();
+                mRenderer.setTimeZone(TimeZone.getDefault());
                 invalidate();
             }
         };
@@ -192,30 +148,42 @@ public class DigitalWatchFace extends CanvasWatchFaceService {
                     .setHotwordIndicatorGravity(Gravity.TOP | Gravity.CENTER)
                     .setViewProtectionMode(WatchFaceStyle.PROTECT_HOTWORD_INDICATOR)
                     .build());
-            Resources resources = DigitalWatchFace.this.getResources();
-            mTimeYOffset = resources.getDimension(R.dimen.digital_time_y_offset);
-
-            // initialize paint objects
-            mBackgroundPaint = new Paint();
-            mBackgroundPaint.setColor(resources.getColor(R.color.background_sunny));
-
-            mWhiteTextPaint = new Paint();
-            mWhiteTextPaint = createTextPaint(resources.getColor(R.color.primary_text));
-
-            mGreyTextPaint = new Paint();
-            mGreyTextPaint = createTextPaint(resources.getColor(R.color.secondary_text));
-
-            mWeatherIconPaint = new Paint();
+            mRenderer = new WatchFaceRenderer(DigitalWatchFace.this.getResources());
+            mRenderer.setDayListener(new WatchFaceRenderer.DayListener() {
+                @Override
+                public void onDayChanged(long dayStart) {
+                    // the cached forecast may be from a previous day
+                    showForecastFor(dayStart);
+                }
+            });
+            mIconSize = DigitalWatchFace.this.getResources().getInteger(R.integer.icon_size);
 
-            mCalendar = Calendar.getInstance();
-            initFormats();
+            // draw whatever the phone last sent straight away
+            mWeatherCache = new WeatherCache(getApplicationContext());
+            byte[] forecast = mWeatherCache.getForecast();
+            if (forecast != null) {
+                applyForecast(forecast);
+            }
 
-            // build data access client
+            // build data access client, connected for as long as the engine lives so data
+            // change events keep coming while the face isn't visible
             mGoogleApiClient = new GoogleApiClient.Builder(getApplicationContext())
                     .addApi(Wearable.API)
                     .addConnectionCallbacks(Engine.this)
                     .addOnConnectionFailedListener(Engine.this)
                     .build();
+            mGoogleApiClient.connect();
+        }
+
+        /**
+         * Access the data layer on the connected device and retrieve weather information, unless
+         * the cached forecast is recent enough
+         */
+        void refreshWeatherDataIfStale() {
+            if (mWeatherCache.isFresh(System.currentTimeMillis())) {
+                return;
+            }
+            getInitialWeatherData();
         }
 
         /**
@@ -237,7 +205,7 @@ public class DigitalWatchFace extends CanvasWatchFaceService {
 
                     Uri uri = new Uri.Builder()
                             .scheme(PutDataRequest.WEAR_URI_SCHEME)
-                            .path(DATA_PATH)
+                            .path(WearContract.DATA_PATH)
                             .authority(connectedNode.getId())
                             .build();
 
@@ -263,20 +231,78 @@ public class DigitalWatchFace extends CanvasWatchFaceService {
          * @param dataMap
          */
         void extractWeatherData (DataMap dataMap) {
-            mHighTemp = dataMap.getString(HIGH_TEMP);
-            mLowTemp = dataMap.getString(LOW_TEMP);
-            Log.i("WATCH","High temp: "+mHighTemp);
-            Log.i("WATCH", "Low temp: " + mLowTemp);
+            byte[] forecast = dataMap.getByteArray(WearContract.FORECAST);
+            if (forecast == null) {
+                Log.w("WATCH", "Data item has no forecast");
+                return;
+            }
+            if (applyForecast(forecast)) {
+                mWeatherCache.put(forecast, System.currentTimeMillis());
+            }
+        }
+
+        /**
+         * Show the forecast, as encoded by ForecastCodec
+         * @param forecast
+         * @return whether the forecast could be decoded
+         */
+        boolean applyForecast(byte[] forecast) {
+            List<ForecastDay> days;
+            try {
+                days = ForecastCodec.decode(forecast);
+            } catch (IllegalArgumentException e) {
+                Log.e("WATCH", "Can't decode forecast", e);
+                return false;
+            }
+            mDays = days;
+            mShownDay = null;
+            Calendar calendar = Calendar.getInstance();
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            showForecastFor(calendar.getTimeInMillis());
+            return true;
+        }
+
+        /**
+         * Show the first day of the forecast that isn't over yet
+         * @param dayStart the local midnight today started at
+         */
+        void showForecastFor(long dayStart) {
+            if (mDays == null) {
+                return;
+            }
+            ForecastDay today = null;
+            for (ForecastDay day : mDays) {
+                if (day.date >= dayStart) {
+                    today = day;
+                    break;
+                }
+            }
+            if (today != null && today == mShownDay) {
+                return;
+            }
+            mShownDay = today;
+            if (today == null) {
+                // everything we have is in the past, better nothing than stale weather
+                Log.i("WATCH", "Forecast is out of date");
+                mWeatherGeneration++;
+                mRenderer.setWeather(null, null, null);
+                invalidate();
+                return;
+            }
+            Log.i("WATCH","High temp: "+today.highText);
+            Log.i("WATCH", "Low temp: " + today.lowText);
 
-            Asset weatherIconAsset = dataMap.getAsset(WEATHER_ICON);
-            loadBitmapFromAsset(weatherIconAsset);
+            showWeather(today.highText, today.lowText, today.weatherId);
         }
 
         @Override
         public void onConnected(Bundle bundle) {
             Log.i("WATCH","onConnected");
-            // get initial weather info from connected device
-            getInitialWeatherData();
+            // get weather info from connected device if what we have is old
+            refreshWeatherDataIfStale();
 
             // listen to data change event
             Wearable.DataApi.addListener(mGoogleApiClient, Engine.this);
@@ -299,7 +325,7 @@ public class DigitalWatchFace extends CanvasWatchFaceService {
                 if (event.getType() == DataEvent.TYPE_CHANGED) {
                     // DataItem changed
                     DataItem item = event.getDataItem();
-                    if (item.getUri().getPath().compareTo(DATA_PATH) == 0) {
+                    if (item.getUri().getPath().compareTo(WearContract.DATA_PATH) == 0) {
                         DataMap dataMap = DataMapItem.fromDataItem(item).getDataMap();
 
                         extractWeatherData(dataMap);
@@ -314,49 +340,38 @@ public class DigitalWatchFace extends CanvasWatchFaceService {
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
 
-            // stop listen to the data change event
-            Wearable.DataApi.removeListener(mGoogleApiClient, Engine.this);
-
-            // disconnect from data layer
+            // stop listen to the data change event and disconnect from data layer
             if(mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
+                Wearable.DataApi.removeListener(mGoogleApiClient, Engine.this);
                 mGoogleApiClient.disconnect();
             }
+            // drop any icon still decoding
+            mWeatherGeneration++;
+            mRenderer.release();
             super.onDestroy();
         }
 
         /**
-         * Create a text paint with specified colour
-         * @param textColor
-         * @return
+         * Load the bundled icon for the condition, then show it along with the temperatures so
+         * the face changes in one go
+         * @param highTemp
+         * @param lowTemp
+         * @param weatherId
          */
-        private Paint createTextPaint(int textColor) {
-            Paint paint = new Paint();
-            paint.setColor(textColor);
-            paint.setTypeface(NORMAL_TYPEFACE);
-            paint.setAntiAlias(true);
-            return paint;
-        }
-
-        /**
-         * Load bit map from asset provided
-         * @param asset
-         */
-        public void loadBitmapFromAsset(Asset asset) {
-            if (asset == null) {
-                Log.e("WATCH", "Asset received on watch face is null");
-                return;
-            }
-            // convert asset into a file descriptor and get notified when it's ready
-            Wearable.DataApi.getFdForAsset(
-                    mGoogleApiClient, asset).setResultCallback(new ResultCallback<DataApi.GetFdForAssetResult>() {
+        void showWeather(final String highTemp, final String lowTemp, final int weatherId) {
+            final int generation = ++mWeatherGeneration;
+            WeatherIcons.load(getResources(), weatherId, mIconSize, new WeatherIcons.Callback() {
                 @Override
-                public void onResult(DataApi.GetFdForAssetResult getFdForAssetResult) {
-                    InputStream assetInputStream = getFdForAssetResult.getInputStream();
-                    if (assetInputStream == null) {
-                        Log.w("WATCH", "Requested an unknown Asset.");
+                public void onIconLoaded(Bitmap icon) {
+                    if (generation != mWeatherGeneration) {
+                        // a newer forecast came in while this one's icon was decoding
                         return;
                     }
-                    mWeatherIconBitmap = BitmapFactory.decodeStream(assetInputStream);
+                    if (icon == null) {
+                        Log.w("WATCH", "No icon for condition " + weatherId);
+                    }
+                    mRenderer.setWeather(highTemp, lowTemp, icon);
+                    invalidate();
                 }
             });
         }
@@ -368,18 +383,14 @@ public class DigitalWatchFace extends CanvasWatchFaceService {
             if (visible) {
                 registerReceiver();
 
-                mGoogleApiClient.connect();
+                if (mGoogleApiClient.isConnected()) {
+                    refreshWeatherDataIfStale();
+                }
 
                 // Update time zone in case it changed while we weren't visible.
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                initFormats();
+                mRenderer.setTimeZone(TimeZone.getDefault());
             } else {
                 unregisterReceiver();
-
-                Wearable.DataApi.removeListener(mGoogleApiClient, Engine.this);
-                if(mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
-                    mGoogleApiClient.disconnect();
-                }
             }
 
             // Whether the timer should be running depends on whether we're visible (as well as
@@ -409,33 +420,7 @@ public class DigitalWatchFace extends CanvasWatchFaceService {
             super.onApplyWindowInsets(insets);
 
             // Load resources that have alternate values for round watches.
-            Resources resources = DigitalWatchFace.this.getResources();
-            boolean isRound = insets.isRound();
-            mTimeXOffset = resources.getDimension(isRound
-                    ? R.dimen.digital_time_x_offset_round : R.dimen.digital_time_x_offset);
-
-            // TODO: 26/01/2016 move to onCreate
-            mDateXOffset = resources.getDimension(R.dimen.digital_date_x_offset);
-            mDateYOffset = resources.getDimension(R.dimen.digital_date_y_offset);
-            mSeparatorXOffset = resources.getDimension(R.dimen.digital_separator_x_offset);
-            mSeparatorYOffset = resources.getDimension(R.dimen.digital_separator_y_offset);
-            mIconXOffset = resources.getDimension(R.dimen.digital_icon_x_offset);
-            mIconYOffset = resources.getDimension(R.dimen.digital_icon_y_offset);
-            mHighXOffset = resources.getDimension(R.dimen.digital_high_x_offset);
-            mHighYOffset = resources.getDimension(R.dimen.digital_high_y_offset);
-            mLowXOffset = resources.getDimension(R.dimen.digital_low_x_offset);
-            mLowYOffset = resources.getDimension(R.dimen.digital_low_y_offset);
-
-            mSeparatorLength = resources.getDimension(R.dimen.digital_separator_length);
-
-            iconSize = resources.getInteger(R.integer.icon_size);
-
-            mTimeTextSize = resources.getDimension(isRound
-                    ? R.dimen.digital_text_size_round : R.dimen.digital_text_size);
-
-            mDateTextSize = resources.getDimension(R.dimen.digital_date_text_size);
-            mHighTempTextSize = resources.getDimension(R.dimen.digital_high_temp_size);
-            mLowTempTextSize = resources.getDimension(R.dimen.digital_low_temp_text_size);
+            mRenderer.setLayout(DigitalWatchFace.this.getResources(), insets.isRound());
         }
 
         @Override
@@ -455,10 +440,7 @@ public class DigitalWatchFace extends CanvasWatchFaceService {
             super.onAmbientModeChanged(inAmbientMode);
             if (mAmbient != inAmbientMode) {
                 mAmbient = inAmbientMode;
-                if (mLowBitAmbient) {
-                    mWhiteTextPaint.setAntiAlias(!inAmbientMode);
-                    mGreyTextPaint.setAntiAlias(!inAmbientMode);
-                }
+                mRenderer.setAmbient(inAmbientMode, mLowBitAmbient);
                 invalidate();
             }
 
@@ -490,54 +472,7 @@ public class DigitalWatchFace extends CanvasWatchFaceService {
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            // Draw the background.
-            if (isInAmbientMode()) {
-                canvas.drawColor(Color.BLACK);
-            } else {
-                canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
-            }
-
-            // Draw time
-            long now = System.currentTimeMillis();
-            mCalendar.setTimeInMillis(now);
-            mDate.setTime(now);
-            String timeText = mTimeFormat.format(mDate);
-
-            mWhiteTextPaint.setTextSize(mTimeTextSize);
-            canvas.drawText(timeText, mTimeXOffset, mTimeYOffset, mWhiteTextPaint);
-
-            if(!mAmbient) {
-                // Draw date
-                String dateText = mDateFormat.format(mDate);
-                mGreyTextPaint.setTextSize(mDateTextSize);
-                canvas.drawText(dateText, mDateXOffset, mDateYOffset, mGreyTextPaint);
-
-                // Draw weather information if available
-                if(mHighTemp != null && mLowTemp != null) {
-                    // Draw high
-                    mWhiteTextPaint.setTextSize(mHighTempTextSize);
-                    canvas.drawText(mHighTemp, mHighXOffset, mHighYOffset, mWhiteTextPaint);
-                    // Draw low
-                    mGreyTextPaint.setTextSize(mLowTempTextSize);
-                    canvas.drawText(mLowTemp, mLowXOffset, mLowYOffset, mGreyTextPaint);
-                    // Draw separator
-                    mGreyTextPaint.setStrokeWidth(0);
-                    canvas.drawLine(mSeparatorXOffset, mSeparatorYOffset, mSeparatorXOffset + mSeparatorLength, mSeparatorYOffset, mGreyTextPaint);
-                }
-                if(mWeatherIconBitmap != null) {
-                    // Scale and draw icon
-                    float ratio = iconSize / (float) mWeatherIconBitmap.getWidth();
-                    float middleX = iconSize / 2.0f;
-                    float middleY = iconSize / 2.0f;
-
-                    Matrix scaleMatrix = new Matrix();
-                    scaleMatrix.setScale(ratio, ratio, mIconXOffset + middleX, mIconYOffset + middleY);
-                    canvas.setMatrix(scaleMatrix);
-                    mWeatherIconPaint.setFilterBitmap(true);
-
-                    canvas.drawBitmap(mWeatherIconBitmap, mIconXOffset * ratio, mIconYOffset * ratio, mWeatherIconPaint);
-                }
-            }
+            mRenderer.draw(canvas, bounds, System.currentTimeMillis());
         }
 
         /**
@@ -571,18 +506,5 @@ public class DigitalWatchFace extends CanvasWatchFaceService {
                 mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
             }
         }
-
-        /**
-         * initialize the date and time format
-         */
-        private void initFormats() {
-            mDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy", Locale.getDefault());
-            mDateFormat.setCalendar(mCalendar);
-
-            mTimeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
-            mTimeFormat.setCalendar(mCalendar);
-
-            mDate = new Date();
-        }
     }
 }
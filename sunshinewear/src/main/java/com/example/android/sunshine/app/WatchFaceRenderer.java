@@ -0,0 +1,376 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.support.annotation.VisibleForTesting;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Draws the watch face.  Everything a frame needs is set up ahead of time: each element has its
+ * own paint, the icon's destination is laid out once, and the time and date strings are only
+ * formatted again when the minute or the day changes, so drawing a frame allocates nothing.
+ * <p>
+ * Everything but the time is drawn into an offscreen layer, one per mode, that is only drawn
+ * again when the date, the weather or the layout changes.  A frame is then that layer plus the
+ * time.
+ */
+final class WatchFaceRenderer {
+
+    /**
+     * Told when a frame is the first of a new day, before it's drawn.
+     */
+    interface DayListener {
+        /**
+         * @param dayStart the local midnight the day started at, in millis
+         */
+        void onDayChanged(long dayStart);
+    }
+
+    private static final Typeface NORMAL_TYPEFACE =
+            Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
+
+    private static final long MINUTE_IN_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    // modes with a static layer of their own
+    private static final int MODE_INTERACTIVE = 0;
+    private static final int MODE_AMBIENT = 1;
+    private static final int MODE_LOW_BIT_AMBIENT = 2;
+    private static final int MODE_COUNT = 3;
+
+    private final int mBackgroundColor;
+
+    // paint for drawing each element
+    private final Paint mTimePaint;
+    private final Paint mDatePaint;
+    private final Paint mHighPaint;
+    private final Paint mLowPaint;
+    private final Paint mSeparatorPaint;
+    private final Paint mIconPaint;
+
+    // date and format objects
+    private final Calendar mCalendar = Calendar.getInstance();
+    private final Date mDate = new Date();
+    private SimpleDateFormat mDateFormat;
+    private SimpleDateFormat mTimeFormat;
+
+    // formatted strings and the minute and day they're for
+    private String mTimeText;
+    private String mDateText;
+    private long mTextMinute = Long.MIN_VALUE;
+    private int mTextDay = -1;
+
+    // position to draw elements
+    private float mTimeXOffset;
+    private float mTimeYOffset;
+    private float mDateXOffset;
+    private float mDateYOffset;
+    private float mSeparatorXOffset;
+    private float mSeparatorYOffset;
+    private float mSeparatorLength;
+    private float mHighXOffset;
+    private float mHighYOffset;
+    private float mLowXOffset;
+    private float mLowYOffset;
+    private final RectF mIconBounds = new RectF();
+
+    private boolean mAmbient;
+    private DayListener mDayListener;
+    private int mMode = MODE_INTERACTIVE;
+
+    // static layer per mode, allocated when the mode is first drawn
+    private final Bitmap[] mLayers = new Bitmap[MODE_COUNT];
+    private final boolean[] mLayerValid = new boolean[MODE_COUNT];
+    private final Canvas mLayerCanvas = new Canvas();
+    private int mLayerBuilds;
+
+    private String mHighTemp;
+    private String mLowTemp;
+    private Bitmap mWeatherIcon;
+
+    WatchFaceRenderer(Resources resources) {
+        mBackgroundColor = resources.getColor(R.color.background_sunny);
+
+        mTimePaint = createTextPaint(resources.getColor(R.color.primary_text));
+        mDatePaint = createTextPaint(resources.getColor(R.color.secondary_text));
+        mDatePaint.setTextSize(resources.getDimension(R.dimen.digital_date_text_size));
+        mHighPaint = createTextPaint(resources.getColor(R.color.primary_text));
+        mHighPaint.setTextSize(resources.getDimension(R.dimen.digital_high_temp_size));
+        mLowPaint = createTextPaint(resources.getColor(R.color.secondary_text));
+        mLowPaint.setTextSize(resources.getDimension(R.dimen.digital_low_temp_text_size));
+        mSeparatorPaint = createTextPaint(resources.getColor(R.color.secondary_text));
+        mSeparatorPaint.setStrokeWidth(0);
+        mIconPaint = new Paint();
+        mIconPaint.setFilterBitmap(true);
+
+        initFormats();
+        setLayout(resources, false);
+    }
+
+    /**
+     * Create a text paint with specified colour
+     * @param textColor
+     * @return
+     */
+    private static Paint createTextPaint(int textColor) {
+        Paint paint = new Paint();
+        paint.setColor(textColor);
+        paint.setTypeface(NORMAL_TYPEFACE);
+        paint.setAntiAlias(true);
+        return paint;
+    }
+
+    /**
+     * Load the positions and sizes of the elements, some of which differ on round watches
+     */
+    void setLayout(Resources resources, boolean isRound) {
+        mTimeXOffset = resources.getDimension(isRound
+                ? R.dimen.digital_time_x_offset_round : R.dimen.digital_time_x_offset);
+        mTimeYOffset = resources.getDimension(R.dimen.digital_time_y_offset);
+        mTimePaint.setTextSize(resources.getDimension(isRound
+                ? R.dimen.digital_text_size_round : R.dimen.digital_text_size));
+
+        mDateXOffset = resources.getDimension(R.dimen.digital_date_x_offset);
+        mDateYOffset = resources.getDimension(R.dimen.digital_date_y_offset);
+        mSeparatorXOffset = resources.getDimension(R.dimen.digital_separator_x_offset);
+        mSeparatorYOffset = resources.getDimension(R.dimen.digital_separator_y_offset);
+        mSeparatorLength = resources.getDimension(R.dimen.digital_separator_length);
+        mHighXOffset = resources.getDimension(R.dimen.digital_high_x_offset);
+        mHighYOffset = resources.getDimension(R.dimen.digital_high_y_offset);
+        mLowXOffset = resources.getDimension(R.dimen.digital_low_x_offset);
+        mLowYOffset = resources.getDimension(R.dimen.digital_low_y_offset);
+
+        float iconXOffset = resources.getDimension(R.dimen.digital_icon_x_offset);
+        float iconYOffset = resources.getDimension(R.dimen.digital_icon_y_offset);
+        int iconSize = resources.getInteger(R.integer.icon_size);
+        mIconBounds.set(iconXOffset, iconYOffset, iconXOffset + iconSize,
+                iconYOffset + iconSize);
+        invalidateLayers();
+    }
+
+    /**
+     * @param ambient whether the watch is in ambient mode
+     * @param lowBitAmbient whether the display has fewer bits for each color in ambient mode, in
+     *                      which case text is drawn without anti-aliasing in ambient mode
+     */
+    void setAmbient(boolean ambient, boolean lowBitAmbient) {
+        mAmbient = ambient;
+        if (!ambient) {
+            mMode = MODE_INTERACTIVE;
+        } else {
+            mMode = lowBitAmbient ? MODE_LOW_BIT_AMBIENT : MODE_AMBIENT;
+        }
+        boolean antiAlias = !(ambient && lowBitAmbient);
+        mTimePaint.setAntiAlias(antiAlias);
+        mDatePaint.setAntiAlias(antiAlias);
+        mHighPaint.setAntiAlias(antiAlias);
+        mLowPaint.setAntiAlias(antiAlias);
+        mSeparatorPaint.setAntiAlias(antiAlias);
+    }
+
+    /**
+     * @param highTemp today's high, formatted, or null if there's no forecast
+     * @param lowTemp today's low, formatted, or null if there's no forecast
+     * @param weatherIcon icon for today's condition, or null if there's none
+     */
+    void setWeather(String highTemp, String lowTemp, Bitmap weatherIcon) {
+        mHighTemp = highTemp;
+        mLowTemp = lowTemp;
+        mWeatherIcon = weatherIcon;
+        invalidateLayers();
+    }
+
+    /**
+     * @param listener listener for day changes, or null
+     */
+    void setDayListener(DayListener listener) {
+        mDayListener = listener;
+    }
+
+    /**
+     * Use the time zone and locale now in effect, they may have changed since the last frame
+     */
+    void setTimeZone(TimeZone timeZone) {
+        mCalendar.setTimeZone(timeZone);
+        initFormats();
+    }
+
+    /**
+     * initialize the date and time format
+     */
+    private void initFormats() {
+        mDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy", Locale.getDefault());
+        mDateFormat.setCalendar(mCalendar);
+
+        mTimeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
+        mTimeFormat.setCalendar(mCalendar);
+
+        // the strings must be formatted again with the new formats
+        mTextMinute = Long.MIN_VALUE;
+        mTextDay = -1;
+        invalidateLayers();
+    }
+
+    /**
+     * Have every static layer drawn again before it's next used
+     */
+    private void invalidateLayers() {
+        for (int i = 0; i < MODE_COUNT; i++) {
+            mLayerValid[i] = false;
+        }
+    }
+
+    /**
+     * Format the time and date strings again if the minute or the day changed
+     */
+    private void updateText(long now) {
+        long minute = now / MINUTE_IN_MILLIS;
+        if (minute == mTextMinute) {
+            return;
+        }
+        mTextMinute = minute;
+        mCalendar.setTimeInMillis(now);
+        mDate.setTime(now);
+        mTimeText = mTimeFormat.format(mDate);
+
+        // a day only ever starts on a minute
+        int day = mCalendar.get(Calendar.DAY_OF_YEAR);
+        if (day != mTextDay) {
+            mTextDay = day;
+            mDateText = mDateFormat.format(mDate);
+            invalidateLayers();
+            if (mDayListener != null) {
+                mCalendar.set(Calendar.HOUR_OF_DAY, 0);
+                mCalendar.set(Calendar.MINUTE, 0);
+                mCalendar.set(Calendar.SECOND, 0);
+                mCalendar.set(Calendar.MILLISECOND, 0);
+                long dayStart = mCalendar.getTimeInMillis();
+                mCalendar.setTimeInMillis(now);
+                mDayListener.onDayChanged(dayStart);
+            }
+        }
+    }
+
+    /**
+     * @return the time as drawn by the last frame
+     */
+    @VisibleForTesting
+    String getTimeText() {
+        return mTimeText;
+    }
+
+    /**
+     * @return the date as drawn by the last frame
+     */
+    @VisibleForTesting
+    String getDateText() {
+        return mDateText;
+    }
+
+    /**
+     * @return how many times a static layer has been drawn
+     */
+    @VisibleForTesting
+    int getLayerBuilds() {
+        return mLayerBuilds;
+    }
+
+    void draw(Canvas canvas, Rect bounds, long now) {
+        updateText(now);
+
+        // Draw everything but the time in one go
+        canvas.drawBitmap(getLayer(bounds), bounds.left, bounds.top, null);
+
+        // Draw time
+        canvas.drawText(mTimeText, mTimeXOffset, mTimeYOffset, mTimePaint);
+    }
+
+    /**
+     * Free the static layers, they're allocated again if the face is drawn after this
+     */
+    void release() {
+        for (int i = 0; i < MODE_COUNT; i++) {
+            if (mLayers[i] != null) {
+                mLayers[i].recycle();
+                mLayers[i] = null;
+            }
+            mLayerValid[i] = false;
+        }
+    }
+
+    /**
+     * @return the current mode's static layer, drawn again first if it's out of date
+     */
+    private Bitmap getLayer(Rect bounds) {
+        Bitmap layer = mLayers[mMode];
+        if (layer == null || layer.getWidth() != bounds.width()
+                || layer.getHeight() != bounds.height()) {
+            if (layer != null) {
+                layer.recycle();
+            }
+            layer = Bitmap.createBitmap(bounds.width(), bounds.height(), Bitmap.Config.ARGB_8888);
+            mLayers[mMode] = layer;
+            mLayerValid[mMode] = false;
+        }
+        if (!mLayerValid[mMode]) {
+            mLayerCanvas.setBitmap(layer);
+            drawStatic(mLayerCanvas);
+            mLayerCanvas.setBitmap(null);
+            mLayerValid[mMode] = true;
+            mLayerBuilds++;
+        }
+        return layer;
+    }
+
+    /**
+     * Draw the elements that change at most once a day or with the weather
+     */
+    private void drawStatic(Canvas canvas) {
+        // Draw the background.
+        canvas.drawColor(mAmbient ? Color.BLACK : mBackgroundColor);
+
+        if (mAmbient) {
+            return;
+        }
+        // Draw date
+        canvas.drawText(mDateText, mDateXOffset, mDateYOffset, mDatePaint);
+
+        // Draw weather information if available
+        if (mHighTemp != null && mLowTemp != null) {
+            canvas.drawText(mHighTemp, mHighXOffset, mHighYOffset, mHighPaint);
+            canvas.drawText(mLowTemp, mLowXOffset, mLowYOffset, mLowPaint);
+            canvas.drawLine(mSeparatorXOffset, mSeparatorYOffset,
+                    mSeparatorXOffset + mSeparatorLength, mSeparatorYOffset, mSeparatorPaint);
+        }
+        if (mWeatherIcon != null) {
+            // Decoded at the icon size, so this doesn't need to scale
+            canvas.drawBitmap(mWeatherIcon, null, mIconBounds, mIconPaint);
+        }
+    }
+}
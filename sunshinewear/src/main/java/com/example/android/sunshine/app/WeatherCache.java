@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Base64;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The last forecast received from the phone, kept across engines and restarts so the face can
+ * draw the weather as soon as it's created instead of after a round trip to the phone.
+ */
+final class WeatherCache {
+
+    // The phone syncs every three hours and pushes changes as they come, so this is only a
+    // backstop for DataEvents missed while the face wasn't running.
+    static final long FRESHNESS_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static final String PREFS_NAME = "weather_cache";
+    private static final String KEY_FORECAST = "forecast";
+    private static final String KEY_UPDATED_AT = "updated_at";
+
+    private final SharedPreferences mPrefs;
+
+    WeatherCache(Context context) {
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return the last forecast stored, encoded by ForecastCodec, or null if there's none
+     */
+    byte[] getForecast() {
+        String forecast = mPrefs.getString(KEY_FORECAST, null);
+        if (forecast == null) {
+            return null;
+        }
+        try {
+            return Base64.decode(forecast, Base64.NO_WRAP);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param now current time in millis
+     * @return whether the stored forecast was received from the phone recently enough
+     */
+    boolean isFresh(long now) {
+        long updatedAt = mPrefs.getLong(KEY_UPDATED_AT, 0);
+        return updatedAt <= now && now - updatedAt < FRESHNESS_MILLIS;
+    }
+
+    /**
+     * Stores a forecast just received from the phone.
+     *
+     * @param forecast the forecast, encoded by ForecastCodec
+     * @param now current time in millis
+     */
+    void put(byte[] forecast, long now) {
+        mPrefs.edit()
+                .putString(KEY_FORECAST, Base64.encodeToString(forecast, Base64.NO_WRAP))
+                .putLong(KEY_UPDATED_AT, now)
+                .apply();
+    }
+}
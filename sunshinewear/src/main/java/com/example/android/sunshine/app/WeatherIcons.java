@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.VisibleForTesting;
+
+import com.example.android.sunshine.shared.ConditionTable;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Resolves a condition id from the phone to one of the icons bundled with the watch face.
+ */
+final class WeatherIcons {
+
+    // Indexed by ConditionTable slug
+    private static final int[] ICONS = {
+            R.drawable.ic_storm,
+            R.drawable.ic_light_rain,
+            R.drawable.ic_rain,
+            R.drawable.ic_snow,
+            R.drawable.ic_fog,
+            R.drawable.ic_clear,
+            R.drawable.ic_light_clouds,
+            R.drawable.ic_cloudy
+    };
+
+    /**
+     * Receives an icon loaded by {@link #load}, on the main thread.
+     */
+    interface Callback {
+        /**
+         * @param icon the icon, or null if the condition has none
+         */
+        void onIconLoaded(Bitmap icon);
+    }
+
+    private static final ExecutorService sDecoder = Executors.newSingleThreadExecutor();
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    // Last icon decoded, shared by every engine so a new one doesn't decode it again.
+    // Only touched on the main thread.
+    private static int sDecodedId;
+    private static int sDecodedSize;
+    private static Bitmap sDecoded;
+
+    private WeatherIcons() {
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return resource id for the corresponding icon, or 0 if the condition is unknown
+     */
+    static int getIconResource(int weatherId) {
+        int slug = ConditionTable.getSlug(weatherId);
+        return slug == ConditionTable.SLUG_NONE ? 0 : ICONS[slug];
+    }
+
+    /**
+     * Loads the icon for a condition, decoded off the main thread at exactly the size it's drawn.
+     * The callback runs straight away if the icon is the one last loaded.  Must be called on
+     * the main thread.
+     *
+     * @param resources Resources to decode the icon from
+     * @param weatherId from OpenWeatherMap API response
+     * @param size width and height of the icon, in pixels
+     * @param callback called on the main thread with the icon
+     * @throws IllegalStateException if called off the main thread
+     */
+    static void load(final Resources resources, int weatherId, final int size,
+                     final Callback callback) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            throw new IllegalStateException("Icons must be loaded on the main thread");
+        }
+        final int iconId = getIconResource(weatherId);
+        if (iconId == 0) {
+            callback.onIconLoaded(null);
+            return;
+        }
+        if (iconId == sDecodedId && size == sDecodedSize) {
+            callback.onIconLoaded(sDecoded);
+            return;
+        }
+        sDecoder.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap icon = decodeScaled(resources, iconId, size);
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        sDecodedId = iconId;
+                        sDecodedSize = size;
+                        sDecoded = icon;
+                        callback.onIconLoaded(icon);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @param resources Resources to decode the icon from
+     * @param weatherId from OpenWeatherMap API response
+     * @param size width and height of the icon, in pixels
+     * @return the icon at exactly the given size, or null if the condition has none
+     */
+    @VisibleForTesting
+    static Bitmap decodeIcon(Resources resources, int weatherId, int size) {
+        int iconId = getIconResource(weatherId);
+        return iconId == 0 ? null : decodeScaled(resources, iconId, size);
+    }
+
+    /**
+     * Decode the bounds first, so the pixels are subsampled as close to the size as possible
+     * without going under, then scale the rest of the way once.  The icons are drawn over the
+     * background, so they keep their alpha.
+     */
+    private static Bitmap decodeScaled(Resources resources, int iconId, int size) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        // Density scaling would decode at a size we didn't ask for
+        options.inScaled = false;
+        BitmapFactory.decodeResource(resources, iconId, options);
+
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= size
+                && options.outHeight / (sampleSize * 2) >= size) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap sampled = BitmapFactory.decodeResource(resources, iconId, options);
+        if (sampled == null || (sampled.getWidth() == size && sampled.getHeight() == size)) {
+            return sampled;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(sampled, size, size, true);
+        if (scaled != sampled) {
+            sampled.recycle();
+        }
+        return scaled;
+    }
+}